@@ -0,0 +1,87 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Synthetic input files for the benchmarks.
+ */
+final class BenchmarkFiles {
+
+	// Each text is displayed 2 seconds every 3 seconds
+	static final long TEXT_PERIOD = 3_000;
+	static final long TEXT_DURATION = 2_000;
+
+	private BenchmarkFiles() {
+	}
+
+	/**
+	 * Keeps the logs of the processing out of the measurements.
+	 */
+	static void quietLogs() {
+		var root = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+		root.setLevel(Level.ERROR);
+	}
+
+	static Path createTempDirectory() throws IOException {
+		return Files.createTempDirectory("subtext-benchmark");
+	}
+
+	static void deleteDirectory(Path directory) throws IOException {
+		try (var files = Files.walk(directory)) {
+			for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	/**
+	 * Writes a SRT file containing <code>count</code> texts, one or two lines each.
+	 */
+	static Path srtFile(Path directory, int count) throws IOException {
+		var file = directory.resolve("subtitles-" + count + ".srt");
+		try (var writer = Files.newBufferedWriter(file, UTF_8)) {
+			for (int i = 0; i < count; i++) {
+				long start = i * TEXT_PERIOD;
+				writer.write(Integer.toString(i + 1));
+				writer.newLine();
+				writer.write(new SrtTime.Value(start, start + TEXT_DURATION).toString());
+				writer.newLine();
+				writer.write("Texte numéro " + i);
+				writer.newLine();
+				if (i % 2 == 0) {
+					writer.write("- Deuxième ligne, un peu plus longue que la première.");
+					writer.newLine();
+				}
+				writer.newLine();
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Writes <code>count</code> segments keeping half of the duration of
+	 * <code>textCount</code> texts.
+	 */
+	static Path segmentsFile(Path directory, int textCount, int count) throws IOException {
+		var file = directory.resolve("segments-" + textCount + "-" + count + ".segments");
+		long span = textCount * TEXT_PERIOD / count;
+		try (var writer = Files.newBufferedWriter(file, UTF_8)) {
+			for (int i = 0; i < count; i++) {
+				long start = i * span;
+				writer.write(new SrtTime.Value(start, start + span / 2).toString());
+				writer.newLine();
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,22 @@
+package com.github.llbrt.subtext;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the processed texts, reported as a throughput in texts per second
+ * (per-text latency is its inverse).
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class CueCounter {
+
+	public long cues;
+
+	@Setup
+	public void reset() {
+		cues = 0;
+	}
+}
@@ -0,0 +1,69 @@
+package com.github.llbrt.subtext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extraction of time segments from a loaded SRT file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int cues;
+
+	@Param({ "1", "100", "10000" })
+	public int segments;
+
+	private Path directory;
+	private SrtFile srtFile;
+	private TimeSegments timeSegments;
+
+	@Setup
+	public void setup() throws IOException {
+		BenchmarkFiles.quietLogs();
+		directory = BenchmarkFiles.createTempDirectory();
+		srtFile = new SrtFile(BenchmarkFiles.srtFile(directory, cues));
+		srtFile.load(true);
+		timeSegments = new TimeSegments(BenchmarkFiles.segmentsFile(directory, cues, segments));
+		timeSegments.load();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkFiles.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	public CueTable extractTimeSegments(CueCounter counter) {
+		var result = srtFile.extractTimeSegments(timeSegments);
+		counter.cues += cues;
+		return result;
+	}
+
+	@Benchmark
+	public TimeSegments loadTimeSegments() throws IOException {
+		var loaded = new TimeSegments(timeSegments.file());
+		loaded.load();
+		return loaded;
+	}
+}
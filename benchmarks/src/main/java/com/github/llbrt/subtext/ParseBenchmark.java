@@ -0,0 +1,64 @@
+package com.github.llbrt.subtext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading of a SRT file, including its validation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int cues;
+
+	private Path directory;
+	private Path srtFile;
+
+	@Setup
+	public void setup() throws IOException {
+		BenchmarkFiles.quietLogs();
+		directory = BenchmarkFiles.createTempDirectory();
+		srtFile = BenchmarkFiles.srtFile(directory, cues);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkFiles.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	public SrtFile load(CueCounter counter) throws IOException {
+		var file = new SrtFile(srtFile);
+		file.load(true);
+		counter.cues += cues;
+		return file;
+	}
+
+	@Benchmark
+	public SrtFile loadMapped(CueCounter counter) throws IOException {
+		var file = new SrtFile(srtFile);
+		file.loadMapped(true);
+		counter.cues += cues;
+		return file;
+	}
+}
@@ -0,0 +1,68 @@
+package com.github.llbrt.subtext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import picocli.CommandLine;
+
+/**
+ * End to end command: load, extend, shift, extract and save.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessorBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int cues;
+
+	@Param({ "1", "100", "10000" })
+	public int segments;
+
+	private Path directory;
+	private String[] arguments;
+
+	@Setup
+	public void setup() throws IOException {
+		BenchmarkFiles.quietLogs();
+		directory = BenchmarkFiles.createTempDirectory();
+		var srtFile = BenchmarkFiles.srtFile(directory, cues);
+		var segmentsFile = BenchmarkFiles.segmentsFile(directory, cues, segments);
+		arguments = new String[] {
+				"-e", "20", "-s", "500",
+				"-o", directory.resolve("destination.srt").toString(),
+				srtFile.toString(), segmentsFile.toString() };
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkFiles.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	public int run(CueCounter counter) {
+		int exitCode = new CommandLine(new SrtFileProcessor()).execute(arguments);
+		if (exitCode != 0) {
+			throw new IllegalStateException("Unexpected exit code: " + exitCode);
+		}
+		counter.cues += cues;
+		return exitCode;
+	}
+}
@@ -0,0 +1,57 @@
+package com.github.llbrt.subtext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing of a SRT file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveBenchmark {
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int cues;
+
+	private Path directory;
+	private SrtFile destination;
+
+	@Setup
+	public void setup() throws IOException {
+		BenchmarkFiles.quietLogs();
+		directory = BenchmarkFiles.createTempDirectory();
+		var source = new SrtFile(BenchmarkFiles.srtFile(directory, cues));
+		source.load(true);
+		destination = new SrtFile(directory.resolve("destination.srt"), source.cues());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkFiles.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	public SrtFile save(CueCounter counter) throws IOException {
+		destination.save();
+		counter.cues += cues;
+		return destination;
+	}
+}
@@ -0,0 +1,47 @@
+package com.github.llbrt.subtext;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing and formatting of a time interval line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SrtTimeBenchmark {
+
+	private final String timeText = "01:04:03,774 --> 01:04:06,090";
+	private final SrtTime.Value value = SrtTime.readSrtTimeValue(1, timeText);
+	private final ByteBuffer buffer = ByteBuffer.allocate(64);
+
+	@Benchmark
+	public SrtTime.Value readSrtTimeValue() {
+		return SrtTime.readSrtTimeValue(1, timeText);
+	}
+
+	@Benchmark
+	public String valueToString() {
+		return value.toString();
+	}
+
+	@Benchmark
+	public ByteBuffer formatInterval() {
+		buffer.clear();
+		SrtTime.formatInterval(value.start(), value.end(), buffer);
+		return buffer;
+	}
+}
@@ -0,0 +1,74 @@
+package com.github.llbrt.subtext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * In-memory operations on a loaded SRT file. Extension and shift alternate
+ * their sign so that the texts stay valid whatever the invocation count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformBenchmark {
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int cues;
+
+	private Path directory;
+	private SrtFile srtFile;
+	private int delta = -1;
+
+	@Setup
+	public void setup() throws IOException {
+		BenchmarkFiles.quietLogs();
+		directory = BenchmarkFiles.createTempDirectory();
+		srtFile = new SrtFile(BenchmarkFiles.srtFile(directory, cues));
+		srtFile.load(true);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkFiles.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	public SrtFile extendTexts(CueCounter counter) {
+		delta = -delta;
+		srtFile.extendTexts(delta);
+		counter.cues += cues;
+		return srtFile;
+	}
+
+	@Benchmark
+	public SrtFile shiftTexts(CueCounter counter) {
+		delta = -delta;
+		srtFile.shiftTexts(delta);
+		counter.cues += cues;
+		return srtFile;
+	}
+
+	@Benchmark
+	public SrtFile checkTexts(CueCounter counter) {
+		srtFile.checkTexts();
+		counter.cues += cues;
+		return srtFile;
+	}
+}
@@ -0,0 +1,48 @@
+#!/usr/bin/env bash
+
+# Creates the AppCDS archive of subfileprocessor.jar (Java 17 or more): the classes
+# loaded by a training run are dumped to an archive mapped by the next JVM runs.
+#
+#   bin/create-appcds.sh [jar] [archive]
+#
+# then run the jar with:
+#
+#   java -XX:SharedArchiveFile=target/subfileprocessor.jsa -jar target/subfileprocessor.jar ...
+#
+# The archive is only valid for the same jar and the same JVM, create it again after each build.
+
+SUBPROCESSOR_JAR=${1:-target/subfileprocessor.jar}
+ARCHIVE=${2:-${SUBPROCESSOR_JAR%.jar}.jsa}
+
+## =======
+
+set -e
+
+training_dir=$(mktemp -d)
+trap 'rm -rf "$training_dir"' EXIT
+
+# Training input: every phase is run (load, extend, shift, extract, save)
+cat > "$training_dir/training.srt" <<SRT
+1
+00:00:01,000 --> 00:00:02,000
+First text
+
+2
+00:00:03,000 --> 00:00:04,500
+Second text
+on two lines
+
+3
+00:00:06,000 --> 00:00:07,000
+Third text
+
+SRT
+cat > "$training_dir/training.segments" <<SEGMENTS
+00:00:00,500 --> 00:00:03,500
+00:00:05,000 --> 00:00:08,000
+SEGMENTS
+
+java -XX:ArchiveClassesAtExit="$ARCHIVE" -jar "$SUBPROCESSOR_JAR" \
+  -e 20 -s 500 -o "$training_dir/training.new.srt" "$training_dir/training.srt" "$training_dir/training.segments" > /dev/null
+
+echo "AppCDS archive created: $ARCHIVE"
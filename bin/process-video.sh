@@ -6,7 +6,7 @@
 # set the following environment variables to get a single MKV containing the
 # video file.
 
-# /!\ the destination file and temporary video files are created in the current directory
+# /!\ temporary video files are created next to the destination file
 
 # ffmpeg options; only options related to video and audio transformation
 FFMPEG_OPT='-map 0:1 -s 1280x720 -b:v 1750k -c:v h264_nvenc -map 0:2 -map 0:3 -c:a copy'
@@ -16,7 +16,8 @@ SUBPROCESSOR_OPT='-e 20 -s 500'
 
 SOURCE_VIDEO=video.ts
 
-SOURCE_SRT=subtitles.srt
+# one subtitle file per language, all cut with the same time segments
+SOURCE_SRTS=(subtitles.fr.srt subtitles.en.srt)
 
 SOURCE_TIME_SEGMENT=time.segments
 
@@ -32,29 +33,9 @@ cmd_mkvmerge=mkvmerge
 
 set -e
 
-sub_output=sub.srt
-java -jar "$SUBPROCESSOR_JAR" -o "$sub_output" $SUBPROCESSOR_OPT "$SOURCE_SRT" "$SOURCE_TIME_SEGMENT"
-
-# Extract videos
-readarray -t time_segments < "$SOURCE_TIME_SEGMENT"
-
-for i in "${!time_segments[@]}"; do
-  printf "%s\t%s\n" "$i" "${time_segments[$i]}"
-  prev_ifs=$IFS
-  IFS=' --> '
-  read -r -a start_end <<< "${time_segments[$i]}"
-  IFS=$prev_ifs
-
-  destination_file=v${i}.ts
-
-  "$cmd_ffmpeg" -hide_banner -y -i "$SOURCE_VIDEO" $FFMPEG_OPT -ss "${start_end[0]//,/.}" -to "${start_end[3]//,/.}" "${destination_file}"
-
-  if [[ $i == 0 ]]; then
-    files_to_merge+=" ${destination_file}"
-  else
-    files_to_merge+=" +${destination_file}"
-  fi
-done
-
-# Merge with subtitles
-"$cmd_mkvmerge" --disable-track-statistics-tags --title "$TITLE" -o "$DESTINATION_VIDEO" ${files_to_merge} "${sub_output}"
+# Subtitles, then segments cut in parallel, then merge with the subtitles
+java -jar "$SUBPROCESSOR_JAR" cut $SUBPROCESSOR_OPT -S "$SOURCE_TIME_SEGMENT" -o "$DESTINATION_VIDEO" \
+  --cut-command "$cmd_ffmpeg -hide_banner -y -i {input} $FFMPEG_OPT -ss {start} -to {end} {output}" \
+  --merge-command "$cmd_mkvmerge --disable-track-statistics-tags --title {title} -o {output} {appendParts} {subtitles}" \
+  --set "title=$TITLE" \
+  "$SOURCE_VIDEO" "${SOURCE_SRTS[@]}"
@@ -0,0 +1,59 @@
+#!/usr/bin/env bash
+
+# Compares the wall time of a short subfileprocessor run in the three launch modes:
+# - jar: java -jar subfileprocessor.jar
+# - appcds: same with the AppCDS archive created by bin/create-appcds.sh
+# - native: native executable built with 'mvn -Pnative package' (GraalVM)
+#
+#   bin/startup-benchmark.sh [runs] [subtitles]
+#
+# Modes whose jar, archive or executable is missing are skipped. Uses hyperfine if it is in the PATH.
+
+RUNS=${1:-20}
+SOURCE_SRT=${2:-src/test/resources/srtfiles/file.srt}
+
+SUBPROCESSOR_JAR=target/subfileprocessor.jar
+ARCHIVE=target/subfileprocessor.jsa
+NATIVE=target/subfileprocessor
+
+## =======
+
+set -e
+
+output_dir=$(mktemp -d)
+trap 'rm -rf "$output_dir"' EXIT
+
+declare -A modes
+[[ -f "$SUBPROCESSOR_JAR" ]] && modes[jar]="java -jar $SUBPROCESSOR_JAR"
+[[ -f "$SUBPROCESSOR_JAR" && -f "$ARCHIVE" ]] && modes[appcds]="java -XX:SharedArchiveFile=$ARCHIVE -jar $SUBPROCESSOR_JAR"
+[[ -x "$NATIVE" ]] && modes[native]="$NATIVE"
+
+if [[ ${#modes[@]} == 0 ]]; then
+  echo "Nothing to run, build the jar first" >&2
+  exit 1
+fi
+
+for mode in jar appcds native; do
+  [[ -z "${modes[$mode]}" ]] && continue
+  cmd="${modes[$mode]} -e 20 -s 500 -o $output_dir/$mode.srt $SOURCE_SRT"
+
+  if command -v hyperfine > /dev/null; then
+    hyperfine --warmup 2 --runs "$RUNS" --command-name "$mode" "$cmd"
+    continue
+  fi
+
+  # Warm up the file system cache
+  $cmd > /dev/null
+  total=0
+  min=
+  for ((i = 0; i < RUNS; i++)); do
+    start=$(date +%s%N)
+    $cmd > /dev/null
+    elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+    total=$((total + elapsed))
+    if [[ -z "$min" || $elapsed -lt $min ]]; then
+      min=$elapsed
+    fi
+  done
+  printf "%-7s mean %5d ms  min %5d ms  (%d runs)\n" "$mode" $((total / RUNS)) "$min" "$RUNS"
+done
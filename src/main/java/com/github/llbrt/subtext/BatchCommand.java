@@ -0,0 +1,180 @@
+package com.github.llbrt.subtext;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
+
+/**
+ * Processes many subtitle files in parallel in the same JVM, with the same
+ * options and time segments.
+ */
+@Command(name = "batch", description = "Process several subtitle files with the same options")
+final class BatchCommand implements Callable<Integer> {
+	private static final Logger logger = LoggerFactory.getLogger(BatchCommand.class);
+
+	private static final String SRT_EXTENSION = ".srt";
+	private static final String NEW_SRT_EXTENSION = ".new.srt";
+	private static final String GLOB_CHARACTERS = "*?[{";
+
+	@Mixin
+	private ProcessingOptions options;
+
+	@Option(names = { "-t", "--threads" }, description = "Count of files processed in parallel (default: count of processors)")
+	private Optional<Integer> threads;
+
+	@Option(names = { "-d", "--output-dir" }, description = "Output directory (default: <subtitles>.new.srt next to each file)")
+	private Optional<Path> outputDir;
+
+	@Option(names = { "-S", "--segments" }, description = "File containing the list of segments to keep, for all the files")
+	private Path segments;
+
+	@Option(names = { "-l", "--list" }, description = "File containing the list of subtitle files (one per line)")
+	private List<Path> lists = new ArrayList<>();
+
+	@Parameters(arity = "0..*", description = "Subtitle files, directories (all '*.srt' files) or globs")
+	private List<Path> sources = new ArrayList<>();
+
+	@Spec
+	private CommandSpec spec;
+
+	@Override
+	public Integer call() throws Exception {
+		var files = new LinkedHashSet<Path>();
+		for (var source : sources) {
+			files.addAll(expand(source));
+		}
+		for (var list : lists) {
+			files.addAll(readList(list));
+		}
+		if (files.isEmpty()) {
+			logger.warn("No subtitle file found");
+			return 0;
+		}
+		var destinations = new LinkedHashMap<Path, Path>();
+		var sourcesByDestination = new HashMap<Path, Path>();
+		for (var file : files) {
+			var destination = destination(file);
+			var target = destination.toAbsolutePath().normalize();
+			if (target.equals(file.toAbsolutePath().normalize())) {
+				// Output directory being the directory of the file
+				throw new CommandLine.ParameterException(spec.commandLine(), "'" + file + "' would be overwritten by its output");
+			}
+			// Files of the same name in several directories, processed in parallel
+			var other = sourcesByDestination.putIfAbsent(target, file);
+			if (other != null) {
+				throw new CommandLine.ParameterException(spec.commandLine(),
+						"'" + other + "' and '" + file + "' would both be written to '" + destination + "'");
+			}
+			destinations.put(file, destination);
+		}
+
+		TimeSegments timeSegments;
+		TimeAnchors anchors;
+		try {
+			timeSegments = SrtJob.loadTimeSegments(segments);
+			anchors = SrtJob.loadAnchors(options.anchorsFile());
+		} catch (ProcessingException e) {
+			throw new CommandLine.ExecutionException(spec.commandLine(), e.getMessage());
+		}
+		if (outputDir.isPresent()) {
+			Files.createDirectories(outputDir.get());
+		}
+
+		var report = new MetricsReport();
+		int threadCount = threads.orElse(Runtime.getRuntime().availableProcessors());
+		var failures = new SrtJob(options, timeSegments, anchors).processAll(destinations, threadCount, report);
+		failures.forEach((file, message) -> logger.error("Failed to process '{}': {}", file, message));
+		logger.info("Batch done: {} file(s) processed, {} failure(s)", files.size() - failures.size(), failures.size());
+		if (options.metricsFile() != null) {
+			try {
+				report.write(options.metricsFile());
+			} catch (IOException e) {
+				logger.error("Failed to write metrics to '{}'", options.metricsFile(), e);
+				throw new CommandLine.ExecutionException(spec.commandLine(), "Invalid metrics file");
+			}
+		}
+
+		return failures.isEmpty() ? 0 : spec.exitCodeOnExecutionException();
+	}
+
+	private Path destination(Path file) {
+		if (outputDir.isEmpty()) {
+			return SrtJob.defaultDestination(file);
+		}
+		return outputDir.get().resolve(file.getFileName().toString());
+	}
+
+	/**
+	 * @return the subtitle files matching <code>path</code>: a file, a
+	 *         directory or a glob.
+	 */
+	static List<Path> expand(Path path) throws IOException {
+		var source = path.toString();
+		int globStart = indexOfGlob(source);
+		if (globStart < 0) {
+			if (!Files.isDirectory(path)) {
+				return List.of(path);
+			}
+			try (var files = Files.list(path)) {
+				return files
+						.filter(BatchCommand::isSubtitleFile)
+						.sorted()
+						.toList();
+			}
+		}
+
+		// Walk from the directory preceding the first glob character
+		int baseEnd = source.lastIndexOf('/', globStart);
+		var base = Path.of(source.substring(0, baseEnd + 1));
+		var matcher = FileSystems.getDefault().getPathMatcher("glob:" + source);
+		try (var files = Files.walk(base)) {
+			return files
+					.filter(matcher::matches)
+					.filter(BatchCommand::isSubtitleFile)
+					.sorted()
+					.toList();
+		}
+	}
+
+	private static List<Path> readList(Path list) throws IOException {
+		try (var lines = Files.lines(list)) {
+			return lines
+					.filter(line -> !line.isBlank())
+					.map(Path::of)
+					.toList();
+		}
+	}
+
+	private static int indexOfGlob(String source) {
+		for (int i = 0; i < source.length(); i++) {
+			if (GLOB_CHARACTERS.indexOf(source.charAt(i)) >= 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isSubtitleFile(Path path) {
+		var name = path.getFileName().toString();
+		return Files.isRegularFile(path) && name.endsWith(SRT_EXTENSION) && !name.endsWith(NEW_SRT_EXTENSION);
+	}
+}
@@ -0,0 +1,74 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Spec;
+import picocli.CommandLine.Unmatched;
+
+/**
+ * Sends a command line to a server started with <code>serve</code>; same
+ * arguments as the main command. The command is processed locally if no
+ * server is listening.
+ */
+@Command(name = "client", description = "Send the command line to a server started with 'serve'")
+final class ClientCommand implements Callable<Integer> {
+	private static final Logger logger = LoggerFactory.getLogger(ClientCommand.class);
+
+	@Option(names = { "--socket" }, description = "Path of the Unix domain socket")
+	private Path socket = ServerProtocol.DEFAULT_SOCKET;
+
+	@Option(names = { "--stop" }, description = "Stop the server")
+	private boolean stop;
+
+	@Unmatched
+	private List<String> arguments = new ArrayList<>();
+
+	@Spec
+	private CommandSpec spec;
+
+	@Override
+	public Integer call() throws Exception {
+		if (!stop && arguments.contains(SrtJob.STANDARD_STREAM.toString())) {
+			// Standard streams of the client not forwarded to the server
+			logger.info("Standard input/output used, processing locally");
+			return SrtFileProcessor.newCommandLine().execute(arguments.toArray(String[]::new));
+		}
+		SocketChannel channel;
+		try {
+			channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+		} catch (IOException e) {
+			if (stop) {
+				throw new IllegalStateException("No server listening on '" + socket + "'", e);
+			}
+			logger.info("No server listening on '{}', processing locally", socket);
+			return SrtFileProcessor.newCommandLine().execute(arguments.toArray(String[]::new));
+		}
+
+		try (channel;
+				var reader = new BufferedReader(Channels.newReader(channel, UTF_8));
+				var writer = Channels.newWriter(channel, UTF_8)) {
+			if (stop) {
+				ServerProtocol.writeStop(writer);
+			} else {
+				ServerProtocol.writeRun(writer, Path.of(""), arguments);
+			}
+			return ServerProtocol.readResponse(reader, spec.commandLine().getErr());
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.github.llbrt.subtext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line of an external tool with placeholders: split in arguments like
+ * a shell would (white spaces, single and double quotes), then each
+ * <code>{name}</code> is replaced by its value, in a single scan: values are
+ * never scanned for placeholders. An argument made of a single placeholder
+ * with a list value is replaced by one argument per element.
+ */
+final class CommandTemplate {
+
+	private final String template;
+	private final List<String> arguments;
+
+	CommandTemplate(String template) {
+		this.template = template;
+		this.arguments = split(template);
+		if (arguments.isEmpty()) {
+			throw new IllegalArgumentException("Empty command");
+		}
+	}
+
+	/**
+	 * @param values value of each placeholder: a string or a list of strings.
+	 * @return the arguments of the command.
+	 */
+	List<String> expand(Map<String, ?> values) {
+		var command = new ArrayList<String>();
+		for (var argument : arguments) {
+			if (argument.startsWith("{") && argument.endsWith("}") && values.get(argument.substring(1, argument.length() - 1)) instanceof List<?> list) {
+				list.forEach(element -> command.add(element.toString()));
+				continue;
+			}
+			command.add(expand(argument, values));
+		}
+		return command;
+	}
+
+	/**
+	 * @return <code>argument</code> with its placeholders replaced, left to
+	 *         right; unknown ones and the ones with a list value are kept as is.
+	 */
+	private static String expand(String argument, Map<String, ?> values) {
+		var expanded = new StringBuilder(argument.length());
+		int from = 0;
+		while (true) {
+			int open = argument.indexOf('{', from);
+			int close = open < 0 ? -1 : argument.indexOf('}', open + 1);
+			if (close < 0) {
+				return expanded.append(argument, from, argument.length()).toString();
+			}
+			// Innermost brace before the closing one
+			open = argument.lastIndexOf('{', close);
+			var value = values.get(argument.substring(open + 1, close));
+			expanded.append(argument, from, open);
+			if (value == null || value instanceof List<?>) {
+				expanded.append(argument, open, close + 1);
+			} else {
+				expanded.append(value);
+			}
+			from = close + 1;
+		}
+	}
+
+	private static List<String> split(String template) {
+		var arguments = new ArrayList<String>();
+		var current = new StringBuilder();
+		boolean inArgument = false;
+		char quote = 0;
+		for (int i = 0; i < template.length(); i++) {
+			char c = template.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				} else {
+					current.append(c);
+				}
+			} else if (c == '\'' || c == '"') {
+				quote = c;
+				inArgument = true;
+			} else if (Character.isWhitespace(c)) {
+				if (inArgument) {
+					arguments.add(current.toString());
+					current.setLength(0);
+					inArgument = false;
+				}
+			} else {
+				current.append(c);
+				inArgument = true;
+			}
+		}
+		if (quote != 0) {
+			throw new IllegalArgumentException("Unterminated quote in '" + template + "'");
+		}
+		if (inArgument) {
+			arguments.add(current.toString());
+		}
+		return arguments;
+	}
+
+	@Override
+	public String toString() {
+		return template;
+	}
+}
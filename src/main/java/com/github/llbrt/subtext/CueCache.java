@@ -0,0 +1,324 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Texts of a subtitle file already parsed, kept in a binary file next to it:
+ * <code>&lt;subtitles&gt;.cues</code>. Read back mapped in memory while the
+ * subtitle file is unchanged, without parsing times nor decoding texts.
+ * <p>
+ * Layout, big endian:
+ * <ul>
+ * <li>header: magic, version, size, modification time and SHA-256 of the
+ * subtitle file, fallback charset it was decoded with, whether counters were
+ * verified, count of texts, of lines and size of the lines;</li>
+ * <li>counters, start times, end times and line counts of the texts;</li>
+ * <li>end offset of each line in the lines, then the lines in UTF-8.</li>
+ * </ul>
+ */
+final class CueCache implements CueReader {
+	private static final Logger logger = LoggerFactory.getLogger(CueCache.class);
+
+	private static final int MAGIC = 0x53425443; // "SBTC"
+	private static final int VERSION = 2;
+	private static final int HASH_LENGTH = 32;
+	// Name in US-ASCII, padded with zeros
+	private static final int CHARSET_LENGTH = 40;
+	private static final int MODIFIED_OFFSET = 16;
+	private static final int HASH_OFFSET = 24;
+	private static final int CHARSET_OFFSET = HASH_OFFSET + HASH_LENGTH;
+	private static final int VERIFIED_OFFSET = CHARSET_OFFSET + CHARSET_LENGTH;
+	private static final int HEADER_SIZE = VERIFIED_OFFSET + 1 + 4 + 4 + 4;
+	private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+	private final ByteBuffer buffer;
+	private final int size;
+
+	// Start of each section
+	private final int counts;
+	private final int starts;
+	private final int ends;
+	private final int lineCounts;
+	private final int lineEnds;
+	private final int lines;
+
+	// Next text and next line to read
+	private int index = 0;
+	private int line = 0;
+
+	/**
+	 * Size and modification time of a subtitle file, taken before it is parsed.
+	 */
+	record Stamp(long size, long modified) {
+
+		static Stamp of(Path subtitles) throws IOException {
+			return new Stamp(Files.size(subtitles), Files.getLastModifiedTime(subtitles).toMillis());
+		}
+	}
+
+	private CueCache(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.size = buffer.getInt(HEADER_SIZE - 12);
+		int lineCount = buffer.getInt(HEADER_SIZE - 8);
+		this.counts = HEADER_SIZE;
+		this.starts = counts + Integer.BYTES * size;
+		this.ends = starts + Long.BYTES * size;
+		this.lineCounts = ends + Long.BYTES * size;
+		this.lineEnds = lineCounts + Integer.BYTES * size;
+		this.lines = lineEnds + Integer.BYTES * lineCount;
+	}
+
+	/**
+	 * @return the cache of <code>subtitles</code>.
+	 */
+	static Path cacheFile(Path subtitles) {
+		return subtitles.resolveSibling(subtitles.getFileName().toString() + ".cues");
+	}
+
+	/**
+	 * Maps the cache of <code>subtitles</code> in memory, if still valid: same
+	 * size and modification time, or same contents, as the subtitle file, and
+	 * same fallback charset. The modification time of a cache still valid for
+	 * the same contents is updated, not to hash them again on the next runs.
+	 *
+	 * @param verifyCount counters have to be verified.
+	 * @param fallback    charset of the contents neither UTF-8 nor UTF-16.
+	 * @return <code>null</code> if there is no valid cache, the subtitle file
+	 *         has to be parsed.
+	 */
+	@Nullable
+	static CueCache open(Path subtitles, boolean verifyCount, Charset fallback) throws IOException {
+		var cacheFile = cacheFile(subtitles);
+		ByteBuffer buffer;
+		try (var channel = FileChannel.open(cacheFile, READ)) {
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+				return null;
+			}
+			buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || cacheSize(buffer) != buffer.limit()) {
+			logger.info("Ignoring cache '{}', unknown format", cacheFile);
+			return null;
+		}
+		if (buffer.getLong(8) != Files.size(subtitles)) {
+			logger.info("Ignoring cache '{}', subtitle file changed", cacheFile);
+			return null;
+		}
+		if (!ByteBuffer.wrap(charsetName(fallback)).equals(buffer.slice(CHARSET_OFFSET, CHARSET_LENGTH))) {
+			logger.info("Ignoring cache '{}', other fallback charset", cacheFile);
+			return null;
+		}
+		long modified = Files.getLastModifiedTime(subtitles).toMillis();
+		if (buffer.getLong(MODIFIED_OFFSET) != modified) {
+			var hash = new byte[HASH_LENGTH];
+			buffer.get(HASH_OFFSET, hash);
+			if (!Arrays.equals(hash, hash(subtitles))) {
+				logger.info("Ignoring cache '{}', subtitle file changed", cacheFile);
+				return null;
+			}
+			updateModified(cacheFile, modified);
+		}
+		if (verifyCount && buffer.get(VERIFIED_OFFSET) == 0) {
+			// Parsed again to report the invalid counter
+			return null;
+		}
+		logger.debug("Using cache '{}'", cacheFile);
+		return new CueCache(buffer);
+	}
+
+	/**
+	 * Writes the cache of <code>subtitles</code>, through a temporary file. Not
+	 * written if the subtitle file changed since it was parsed: its contents
+	 * are hashed, then its size and modification time checked again.
+	 *
+	 * @param stamp       state of the subtitle file before being parsed.
+	 * @param cues        texts loaded, validated.
+	 * @param verifyCount counters were verified when parsed.
+	 * @param fallback    charset of the contents neither UTF-8 nor UTF-16.
+	 */
+	static void write(Path subtitles, Stamp stamp, CueTable cues, boolean verifyCount, Charset fallback) throws IOException {
+		var hash = hash(subtitles);
+		if (!stamp.equals(Stamp.of(subtitles))) {
+			throw new IOException("Subtitle file changed since it was parsed");
+		}
+
+		var textLines = cues.lines();
+		int size = cues.size();
+		int lineCount = 0;
+		long linesSize = 0;
+		for (int i = 0; i < size; i++) {
+			for (int l = 0; l < cues.lineCount(i); l++) {
+				int index = cues.firstLine(i) + l;
+				linesSize += textLines.end(index) - textLines.start(index);
+				lineCount++;
+			}
+		}
+		long cacheSize = cacheSize(size, lineCount, linesSize);
+		if (cacheSize > Integer.MAX_VALUE) {
+			throw new IOException("Too many texts to be cached: " + size);
+		}
+
+		var buffer = ByteBuffer.allocate((int) cacheSize);
+		buffer.putInt(MAGIC).putInt(VERSION)
+				.putLong(stamp.size())
+				.putLong(stamp.modified())
+				.put(hash)
+				.put(charsetName(fallback))
+				.put((byte) (verifyCount ? 1 : 0))
+				.putInt(size).putInt(lineCount).putInt((int) linesSize);
+		for (int i = 0; i < size; i++) {
+			buffer.putInt(cues.count(i));
+		}
+		for (int i = 0; i < size; i++) {
+			buffer.putLong(cues.start(i));
+		}
+		for (int i = 0; i < size; i++) {
+			buffer.putLong(cues.end(i));
+		}
+		for (int i = 0; i < size; i++) {
+			buffer.putInt(cues.lineCount(i));
+		}
+		int end = 0;
+		for (int i = 0; i < size; i++) {
+			for (int l = 0; l < cues.lineCount(i); l++) {
+				int index = cues.firstLine(i) + l;
+				end += textLines.end(index) - textLines.start(index);
+				buffer.putInt(end);
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			for (int l = 0; l < cues.lineCount(i); l++) {
+				int index = cues.firstLine(i) + l;
+				buffer.put(textLines.data(), textLines.start(index), textLines.end(index) - textLines.start(index));
+			}
+		}
+		buffer.flip();
+
+		var cacheFile = cacheFile(subtitles);
+		var temporary = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp-" + ProcessHandle.current().pid() + "-" + Thread.currentThread().getId());
+		try {
+			try (var channel = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			Files.move(temporary, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+		logger.debug("Wrote cache '{}'", cacheFile);
+	}
+
+	private static long cacheSize(int size, int lineCount, long linesSize) {
+		return HEADER_SIZE + (long) size * (Integer.BYTES + 2 * Long.BYTES + Integer.BYTES) + (long) lineCount * Integer.BYTES + linesSize;
+	}
+
+	private static long cacheSize(ByteBuffer header) {
+		return cacheSize(header.getInt(HEADER_SIZE - 12), header.getInt(HEADER_SIZE - 8), header.getInt(HEADER_SIZE - 4));
+	}
+
+	/**
+	 * @return the name of <code>charset</code>, padded to
+	 *         {@link #CHARSET_LENGTH}.
+	 */
+	private static byte[] charsetName(Charset charset) {
+		var name = charset.name().getBytes(US_ASCII);
+		if (name.length > CHARSET_LENGTH) {
+			throw new IllegalArgumentException("Charset name too long: " + charset.name());
+		}
+		return Arrays.copyOf(name, CHARSET_LENGTH);
+	}
+
+	/**
+	 * Updates the modification time in the header of <code>cacheFile</code>,
+	 * still valid for the same contents.
+	 */
+	private static void updateModified(Path cacheFile, long modified) {
+		try (var channel = FileChannel.open(cacheFile, WRITE)) {
+			var time = ByteBuffer.allocate(Long.BYTES).putLong(modified).flip();
+			while (time.hasRemaining()) {
+				channel.write(time, MODIFIED_OFFSET + time.position());
+			}
+		} catch (IOException e) {
+			logger.warn("Failed to update cache '{}'", cacheFile, e);
+		}
+	}
+
+	private static byte[] hash(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		try (var channel = FileChannel.open(file, READ)) {
+			var buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+		return digest.digest();
+	}
+
+	@Override
+	public int line() {
+		// Texts already checked, no line to report
+		return -1;
+	}
+
+	@Override
+	public boolean nextText(CueTable cues, boolean verifyCount) {
+		if (index == size) {
+			return false;
+		}
+		var textLines = cues.lines();
+		int firstLine = textLines.size();
+		int lineCount = buffer.getInt(lineCounts + Integer.BYTES * index);
+		for (int l = 0; l < lineCount; l++, line++) {
+			int from = line == 0 ? 0 : buffer.getInt(lineEnds + Integer.BYTES * (line - 1));
+			int to = buffer.getInt(lineEnds + Integer.BYTES * line);
+			textLines.add(buffer, lines + from, lines + to);
+		}
+		cues.add(buffer.getInt(counts + Integer.BYTES * index), buffer.getLong(starts + Long.BYTES * index), buffer.getLong(ends + Long.BYTES * index),
+				firstLine, lineCount);
+		index++;
+		return true;
+	}
+
+	@Override
+	public void skipText() {
+		// Only valid texts are cached
+	}
+
+	@Override
+	public void close() {
+		// Nothing to release, the mapping is released by the garbage collector
+	}
+}
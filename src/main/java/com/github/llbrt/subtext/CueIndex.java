@@ -0,0 +1,104 @@
+package com.github.llbrt.subtext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index of the texts by time, to find the texts displayed at a given time or
+ * during a range: start times sorted, augmented with the maximum end time of
+ * the texts up to each one. Immutable, safe to share between threads.
+ * <p>
+ * Lookups are in O(log n + k) for texts that don't overlap, as checked when
+ * loaded: every text between the two binary searches matches.
+ */
+final class CueIndex {
+
+	private final long[] starts;
+	private final long[] ends;
+	// Maximum end time of the texts from 0 to i (inclusive), not decreasing
+	private final long[] maxEnds;
+	private final SrtText[] texts;
+
+	private CueIndex(long[] starts, long[] ends, long[] maxEnds, SrtText[] texts) {
+		this.starts = starts;
+		this.ends = ends;
+		this.maxEnds = maxEnds;
+		this.texts = texts;
+	}
+
+	/**
+	 * Indexes the texts of <code>cues</code>, sorted by start time; texts are
+	 * copied, later changes of the table are ignored.
+	 */
+	static CueIndex of(CueTable cues) {
+		int size = cues.size();
+		var starts = new long[size];
+		var ends = new long[size];
+		var maxEnds = new long[size];
+		var texts = new SrtText[size];
+		long maxEnd = Long.MIN_VALUE;
+		for (int i = 0; i < size; i++) {
+			if (i > 0 && cues.start(i) < cues.start(i - 1)) {
+				throw new IllegalArgumentException("Text #" + cues.count(i) + " before the previous one");
+			}
+			starts[i] = cues.start(i);
+			ends[i] = cues.end(i);
+			maxEnd = Math.max(maxEnd, ends[i]);
+			maxEnds[i] = maxEnd;
+			texts[i] = cues.text(i);
+		}
+		return new CueIndex(starts, ends, maxEnds, texts);
+	}
+
+	int size() {
+		return texts.length;
+	}
+
+	/**
+	 * @return the texts displayed at <code>time</code>, start and end included,
+	 *         sorted by start time.
+	 */
+	List<SrtText> cuesAt(long time) {
+		return cuesIn(time, time);
+	}
+
+	/**
+	 * @return the texts displayed during <code>range</code>, even partially,
+	 *         sorted by start time.
+	 */
+	List<SrtText> cuesIn(SrtTime.Value range) {
+		return cuesIn(range.start(), range.end());
+	}
+
+	private List<SrtText> cuesIn(long from, long to) {
+		// Texts starting at or before the end of the range...
+		int last = firstAbove(starts, to, starts.length);
+		// ...from the first one ending at or after its start
+		int first = firstAbove(maxEnds, from - 1, last);
+		var found = new ArrayList<SrtText>(last - first);
+		for (int i = first; i < last; i++) {
+			if (ends[i] >= from) {
+				found.add(texts[i]);
+			}
+		}
+		return List.copyOf(found);
+	}
+
+	/**
+	 * @return index of the first value of <code>sorted</code> greater than
+	 *         <code>value</code>, between 0 and <code>to</code>.
+	 */
+	private static int firstAbove(long[] sorted, long value, int to) {
+		int low = 0;
+		int high = to;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] <= value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
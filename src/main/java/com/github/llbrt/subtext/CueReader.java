@@ -0,0 +1,42 @@
+package com.github.llbrt.subtext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Source of texts read one at a time.
+ */
+interface CueReader extends Closeable {
+
+	/**
+	 * @return index of the last line read.
+	 */
+	int line();
+
+	/**
+	 * Reads the next text and appends it to <code>cues</code>.
+	 *
+	 * @param verifyCount verify text counter is incremented by one.
+	 * @return <code>false</code> at the end of the file.
+	 */
+	boolean nextText(CueTable cues, boolean verifyCount) throws IOException;
+
+	/**
+	 * Skips the rest of an invalid text: lines are read up to an empty one,
+	 * unless the last line read is already empty.
+	 */
+	void skipText() throws IOException;
+
+	/**
+	 * @return the lines of the last text read when kept as in the source
+	 *         instead of being added to the table, separated by the output line
+	 *         separator; <code>null</code> if they were added to the table.
+	 */
+	@Nullable
+	default ByteBuffer rawText() {
+		return null;
+	}
+}
@@ -0,0 +1,279 @@
+package com.github.llbrt.subtext;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Texts of a SRT file stored in parallel primitive arrays: start/end times in
+ * milliseconds, original counters and the range of each text in the shared
+ * {@link TextLines}.
+ */
+final class CueTable {
+	private static final int INITIAL_CAPACITY = 64;
+	// Length of the runs sorted by insertion before being merged
+	private static final int SORT_RUN = 32;
+
+	private final TextLines lines;
+
+	private int size = 0;
+	private int[] counts = new int[INITIAL_CAPACITY];
+	private long[] starts = new long[INITIAL_CAPACITY];
+	private long[] ends = new long[INITIAL_CAPACITY];
+	// Text i uses lines firstLines[i] to firstLines[i] + lineCounts[i] (exclusive)
+	private int[] firstLines = new int[INITIAL_CAPACITY];
+	private int[] lineCounts = new int[INITIAL_CAPACITY];
+
+	CueTable() {
+		this(new TextLines());
+	}
+
+	/**
+	 * Creates an empty table sharing its text lines with other tables.
+	 */
+	CueTable(TextLines lines) {
+		this.lines = lines;
+	}
+
+	TextLines lines() {
+		return lines;
+	}
+
+	/**
+	 * @return a copy of the texts, sharing the same lines.
+	 */
+	CueTable copy() {
+		var copy = new CueTable(lines);
+		copy.size = size;
+		copy.counts = counts.clone();
+		copy.starts = starts.clone();
+		copy.ends = ends.clone();
+		copy.firstLines = firstLines.clone();
+		copy.lineCounts = lineCounts.clone();
+		return copy;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all the texts and their lines: the tables sharing the same lines
+	 * can't be read anymore.
+	 */
+	void clear() {
+		size = 0;
+		lines.clear();
+	}
+
+	/**
+	 * Adds a text whose lines have already been added to {@link #lines()}.
+	 */
+	void add(int count, long start, long end, int firstLine, int lineCount) {
+		if (size == starts.length) {
+			int capacity = 2 * size;
+			counts = Arrays.copyOf(counts, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			firstLines = Arrays.copyOf(firstLines, capacity);
+			lineCounts = Arrays.copyOf(lineCounts, capacity);
+		}
+		counts[size] = count;
+		starts[size] = start;
+		ends[size] = end;
+		firstLines[size] = firstLine;
+		lineCounts[size] = lineCount;
+		size++;
+	}
+
+	/**
+	 * Adds a text, its lines being appended to {@link #lines()}.
+	 */
+	void add(int count, SrtTime.Value time, List<String> texts) {
+		int firstLine = lines.size();
+		for (var text : texts) {
+			lines.add(text);
+		}
+		add(count, time.start(), time.end(), firstLine, texts.size());
+	}
+
+	/**
+	 * Appends the texts of <code>other</code> and their lines.
+	 *
+	 * @param countOffset added to the counters of the texts appended.
+	 */
+	void addAll(CueTable other, int countOffset) {
+		int lineOffset = lines.addAll(other.lines);
+		for (int i = 0; i < other.size; i++) {
+			add(other.counts[i] + countOffset, other.starts[i], other.ends[i], other.firstLines[i] + lineOffset, other.lineCounts[i]);
+		}
+	}
+
+	int count(int index) {
+		return counts[index];
+	}
+
+	long start(int index) {
+		return starts[index];
+	}
+
+	long end(int index) {
+		return ends[index];
+	}
+
+	void setTime(int index, long start, long end) {
+		starts[index] = start;
+		ends[index] = end;
+	}
+
+	/**
+	 * Remaps the times of all the texts, sorted, in a single sweep.
+	 *
+	 * @return index of the first invalid text once remapped, see
+	 *         {@link TimeTransform#apply(long[], long[], int)}; -1 if all valid.
+	 */
+	int retime(TimeTransform transform) {
+		return transform.apply(starts, ends, size);
+	}
+
+	/**
+	 * Copies the text at <code>from</code> over the one at <code>to</code>.
+	 */
+	void move(int from, int to) {
+		counts[to] = counts[from];
+		starts[to] = starts[from];
+		ends[to] = ends[from];
+		firstLines[to] = firstLines[from];
+		lineCounts[to] = lineCounts[from];
+	}
+
+	/**
+	 * Removes the texts from <code>size</code> to the end.
+	 */
+	void truncate(int size) {
+		this.size = Math.min(this.size, size);
+	}
+
+	int firstLine(int index) {
+		return firstLines[index];
+	}
+
+	int lineCount(int index) {
+		return lineCounts[index];
+	}
+
+	/**
+	 * Sorts texts by start time then end time, if not already sorted: the
+	 * indexes of the texts are sorted by a stable merge sort, without boxing,
+	 * then the columns are reordered.
+	 */
+	void sort() {
+		if (isSorted()) {
+			return;
+		}
+		var order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		// Insertion sort of short runs, then merges of runs of doubling width
+		for (int from = 0; from < size; from += SORT_RUN) {
+			int to = Math.min(from + SORT_RUN, size);
+			for (int i = from + 1; i < to; i++) {
+				int index = order[i];
+				int j = i - 1;
+				while (j >= from && compare(order[j], index) > 0) {
+					order[j + 1] = order[j];
+					j--;
+				}
+				order[j + 1] = index;
+			}
+		}
+		var merged = new int[size];
+		for (int width = SORT_RUN; width < size; width *= 2) {
+			for (int from = 0; from < size; from += 2 * width) {
+				int middle = Math.min(from + width, size);
+				int to = Math.min(from + 2 * width, size);
+				int left = from;
+				int right = middle;
+				for (int k = from; k < to; k++) {
+					merged[k] = right == to || (left < middle && compare(order[left], order[right]) <= 0) ? order[left++] : order[right++];
+				}
+			}
+			var swap = order;
+			order = merged;
+			merged = swap;
+		}
+		counts = reorder(counts, order);
+		starts = reorder(starts, order);
+		ends = reorder(ends, order);
+		firstLines = reorder(firstLines, order);
+		lineCounts = reorder(lineCounts, order);
+	}
+
+	private int compare(int i1, int i2) {
+		int startCompare = Long.compare(starts[i1], starts[i2]);
+		return startCompare != 0 ? startCompare : Long.compare(ends[i1], ends[i2]);
+	}
+
+	private boolean isSorted() {
+		for (int i = 1; i < size; i++) {
+			if (starts[i - 1] > starts[i] || (starts[i - 1] == starts[i] && ends[i - 1] > ends[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return a view of the text at <code>index</code>; lines are decoded, in an
+	 *         unmodifiable list.
+	 */
+	SrtText text(int index) {
+		var texts = new String[lineCounts[index]];
+		for (int i = 0; i < texts.length; i++) {
+			texts[i] = lines.line(firstLines[index] + i);
+		}
+		return new SrtText(counts[index], new SrtTime.Value(starts[index], ends[index]), List.of(texts));
+	}
+
+	/**
+	 * @return a read-only view of the texts, created on demand.
+	 */
+	List<SrtText> texts() {
+		return new AbstractList<SrtText>() {
+
+			@Override
+			public SrtText get(int index) {
+				if (index < 0 || index >= size) {
+					throw new IndexOutOfBoundsException(index);
+				}
+				return text(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	private static int[] reorder(int[] values, int[] order) {
+		var result = new int[values.length];
+		for (int i = 0; i < order.length; i++) {
+			result[i] = values[order[i]];
+		}
+		return result;
+	}
+
+	private static long[] reorder(long[] values, int[] order) {
+		var result = new long[values.length];
+		for (int i = 0; i < order.length; i++) {
+			result[i] = values[order[i]];
+		}
+		return result;
+	}
+}
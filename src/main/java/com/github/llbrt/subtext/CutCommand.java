@@ -0,0 +1,262 @@
+package com.github.llbrt.subtext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
+
+/**
+ * Cuts a video to its time segments with an external tool, several segments at
+ * a time, processes its subtitle files with the same segments, then merges the
+ * parts and the subtitles with another tool. The output of each tool is kept
+ * in a <code>.log</code> file next to its output when it fails.
+ */
+@Command(name = "cut", description = "Cut a video and its subtitle files to the time segments, then merge them")
+final class CutCommand implements Callable<Integer> {
+	private static final Logger logger = LoggerFactory.getLogger(CutCommand.class);
+
+	static final String DEFAULT_CUT_COMMAND = "ffmpeg -hide_banner -y -i {input} -ss {start} -to {end} {output}";
+	static final String DEFAULT_MERGE_COMMAND = "mkvmerge --disable-track-statistics-tags -o {output} {appendParts} {subtitles}";
+	private static final String LOG_EXTENSION = ".log";
+	private static final Set<String> BUILTIN_PLACEHOLDERS = Set.of("input", "start", "end", "index", "output", "parts", "appendParts", "subtitles");
+
+	@Mixin
+	private ProcessingOptions options;
+
+	@Option(names = { "-S", "--segments" }, required = true, description = "File containing the list of segments to keep")
+	private Path segments;
+
+	@Option(names = { "-o", "--output" }, required = true, description = "Merged video file; parts are created next to it")
+	private Path output;
+
+	@Option(names = { "-t", "--threads" }, description = "Count of segments cut in parallel (default: count of processors)")
+	private Optional<Integer> threads;
+
+	@Option(names = { "--cut-command" }, defaultValue = DEFAULT_CUT_COMMAND, description = {
+			"Command cutting a segment, with {input}, {start}, {end} (HH:MM:SS.mmm), {index} and {output}",
+			"Default: ${DEFAULT-VALUE}" })
+	private String cutCommand;
+
+	@Option(names = { "--merge-command" }, defaultValue = DEFAULT_MERGE_COMMAND, description = {
+			"Command merging the parts, with {output}, {parts}, {appendParts} (first part then '+<part>' for the others) and {subtitles}",
+			"Default: ${DEFAULT-VALUE}" })
+	private String mergeCommand;
+
+	@Option(names = { "--set" }, paramLabel = "<name>=<value>", description = "Value of another placeholder of the commands, such as {title}")
+	private Map<String, String> placeholders = new LinkedHashMap<>();
+
+	@Parameters(index = "0", paramLabel = "<video>", description = "Video file to cut")
+	private Path video;
+
+	@Parameters(index = "1..*", paramLabel = "<subtitles>", description = "Subtitle files, each one processed to <subtitles>.new.srt and merged")
+	private List<Path> subtitles = new ArrayList<>();
+
+	@Spec
+	private CommandSpec spec;
+
+	@Override
+	public Integer call() throws Exception {
+		CommandTemplate cut;
+		CommandTemplate merge;
+		try {
+			cut = new CommandTemplate(cutCommand);
+			merge = new CommandTemplate(mergeCommand);
+		} catch (IllegalArgumentException e) {
+			throw new ParameterException(spec.commandLine(), e.getMessage());
+		}
+		for (var name : placeholders.keySet()) {
+			if (BUILTIN_PLACEHOLDERS.contains(name)) {
+				throw new ParameterException(spec.commandLine(), "Placeholder {" + name + "} can't be set");
+			}
+		}
+
+		TimeSegments timeSegments;
+		TimeAnchors anchors;
+		try {
+			timeSegments = SrtJob.loadTimeSegments(segments);
+			anchors = SrtJob.loadAnchors(options.anchorsFile());
+		} catch (ProcessingException e) {
+			throw new CommandLine.ExecutionException(spec.commandLine(), e.getMessage());
+		}
+		if (timeSegments.segments().isEmpty()) {
+			throw new CommandLine.ExecutionException(spec.commandLine(), "No time segment to cut");
+		}
+		int threadCount = threads.orElse(Runtime.getRuntime().availableProcessors());
+
+		// Subtitles first, they take much less time than the video
+		var destinations = new LinkedHashMap<Path, Path>();
+		for (var file : subtitles) {
+			destinations.put(file, SrtJob.defaultDestination(file));
+		}
+		var report = new MetricsReport();
+		var subtitleFailures = new SrtJob(options, timeSegments, anchors).processAll(destinations, threadCount, report);
+		if (options.metricsFile() != null) {
+			try {
+				report.write(options.metricsFile());
+			} catch (IOException e) {
+				logger.error("Failed to write metrics to '{}'", options.metricsFile(), e);
+				throw new CommandLine.ExecutionException(spec.commandLine(), "Invalid metrics file");
+			}
+		}
+		subtitleFailures.forEach((file, message) -> logger.error("Failed to process '{}': {}", file, message));
+		if (!subtitleFailures.isEmpty()) {
+			throw new CommandLine.ExecutionException(spec.commandLine(),
+					subtitleFailures.size() + " subtitle file(s) out of " + subtitles.size() + " failed");
+		}
+
+		var parts = cutParts(cut, timeSegments, threadCount);
+
+		var appendParts = new ArrayList<String>();
+		for (var part : parts) {
+			appendParts.add(appendParts.isEmpty() ? part.toString() : "+" + part);
+		}
+		var mergeLog = logFile(output);
+		try {
+			run(merge.expand(values(Map.of(
+					"output", output.toString(),
+					"parts", parts.stream().map(Path::toString).toList(),
+					"appendParts", appendParts,
+					"subtitles", destinations.values().stream().map(Path::toString).toList()))), mergeLog);
+		} catch (ProcessingException e) {
+			throw new CommandLine.ExecutionException(spec.commandLine(), e.getMessage());
+		}
+		for (var part : parts) {
+			Files.deleteIfExists(part);
+		}
+		logger.info("Merged {} part(s) and {} subtitle file(s) in '{}'", parts.size(), subtitles.size(), output);
+		return 0;
+	}
+
+	/**
+	 * Cuts the segments, <code>threads</code> at a time.
+	 *
+	 * @return the parts, in the order of the segments.
+	 */
+	private List<Path> cutParts(CommandTemplate cut, TimeSegments timeSegments, int threadCount) throws InterruptedException {
+		var segmentList = timeSegments.segments();
+		var parts = new ArrayList<Path>();
+		var results = new ArrayList<Future<?>>();
+		var executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, segmentList.size())));
+		try {
+			for (int i = 0; i < segmentList.size(); i++) {
+				var segment = segmentList.get(i);
+				var part = partFile(i);
+				var command = cut.expand(values(Map.of(
+						"input", video.toString(),
+						"start", toolTime(segment.start()),
+						"end", toolTime(segment.end()),
+						"index", String.valueOf(i),
+						"output", part.toString())));
+				parts.add(part);
+				results.add(executor.submit(() -> {
+					run(command, logFile(part));
+					return null;
+				}));
+			}
+
+			int failures = 0;
+			for (int i = 0; i < results.size(); i++) {
+				try {
+					results.get(i).get();
+				} catch (ExecutionException e) {
+					var cause = e.getCause();
+					logger.error("Failed to cut segment #{} '{}': {}", i, segmentList.get(i),
+							cause instanceof ProcessingException ? cause.getMessage() : cause.toString());
+					failures++;
+				}
+			}
+			if (failures > 0) {
+				throw new CommandLine.ExecutionException(spec.commandLine(), failures + " segment(s) out of " + segmentList.size() + " failed");
+			}
+			logger.info("Cut {} segment(s) of '{}'", segmentList.size(), video);
+			return parts;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the values of the placeholders set on the command line, then of
+	 *         <code>builtins</code>.
+	 */
+	private Map<String, ?> values(Map<String, ?> builtins) {
+		var values = new HashMap<String, Object>(placeholders);
+		values.putAll(builtins);
+		return values;
+	}
+
+	/**
+	 * Runs <code>command</code>, its output being written to <code>log</code>,
+	 * deleted on success.
+	 */
+	private static void run(List<String> command, Path log) throws IOException, InterruptedException, ProcessingException {
+		logger.debug("Running {}", command);
+		Process process;
+		try {
+			process = new ProcessBuilder(command)
+					.redirectErrorStream(true)
+					.redirectOutput(log.toFile())
+					.start();
+		} catch (IOException e) {
+			logger.error("Failed to run '{}'", command.get(0), e);
+			throw new ProcessingException("Can't run '" + command.get(0) + "'");
+		}
+		try {
+			int exitCode = process.waitFor();
+			if (exitCode != 0) {
+				throw new ProcessingException("'" + command.get(0) + "' exited with " + exitCode + ", see '" + log + "'");
+			}
+		} finally {
+			if (process.isAlive()) {
+				process.destroyForcibly();
+			}
+		}
+		Files.deleteIfExists(log);
+	}
+
+	/**
+	 * @return the part of segment <code>index</code>: next to the output, with
+	 *         the extension of the video.
+	 */
+	private Path partFile(int index) {
+		var name = video.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		var extension = dot < 0 ? "" : name.substring(dot);
+		return output.resolveSibling(output.getFileName() + ".part" + index + extension);
+	}
+
+	private static Path logFile(Path file) {
+		return file.resolveSibling(file.getFileName() + LOG_EXTENSION);
+	}
+
+	/**
+	 * @return <code>HH:MM:SS.mmm</code>, as expected by ffmpeg.
+	 */
+	static String toolTime(long millis) {
+		var builder = new StringBuilder();
+		SrtTime.formatMillis(millis, builder);
+		return builder.toString().replace(',', '.');
+	}
+}
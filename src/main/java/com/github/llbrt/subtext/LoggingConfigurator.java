@@ -0,0 +1,64 @@
+package com.github.llbrt.subtext;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.ClassicConstants;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.Configurator;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.ConsoleAppender;
+import ch.qos.logback.core.spi.ContextAwareBase;
+
+/**
+ * Logback configuration done in code, found by logback through the service
+ * loader: no XML file is parsed at startup. A configuration file given with
+ * <code>-Dlogback.configurationFile</code> is still used instead.
+ */
+public final class LoggingConfigurator extends ContextAwareBase implements Configurator {
+
+	static final String PATTERN = "%d{HH:mm:ss.SSS} %-5level -%kvp- %msg%n%ex{short}";
+
+	@Override
+	public ExecutionStatus configure(LoggerContext context) {
+		if (System.getProperty(ClassicConstants.CONFIG_FILE_PROPERTY) != null) {
+			// Let the default configurator load the file
+			return ExecutionStatus.INVOKE_NEXT_IF_ANY;
+		}
+
+		var encoder = new PatternLayoutEncoder();
+		encoder.setContext(context);
+		encoder.setPattern(PATTERN);
+		encoder.start();
+
+		var appender = new ConsoleAppender<ILoggingEvent>();
+		appender.setContext(context);
+		appender.setName("STDOUT");
+		appender.setEncoder(encoder);
+		appender.start();
+
+		var root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+		root.setLevel(Level.DEBUG);
+		root.addAppender(appender);
+		return ExecutionStatus.DO_NOT_INVOKE_NEXT_IF_ANY;
+	}
+
+	/**
+	 * Moves the console appenders of the root logger to the standard error, the
+	 * standard output being used for the texts.
+	 */
+	static void logToStandardError() {
+		if (!(LoggerFactory.getILoggerFactory() instanceof LoggerContext context)) {
+			return;
+		}
+		var appenders = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).iteratorForAppenders();
+		while (appenders.hasNext()) {
+			if (appenders.next() instanceof ConsoleAppender<ILoggingEvent> console && !console.getTarget().equals("System.err")) {
+				console.stop();
+				console.setTarget("System.err");
+				console.start();
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+import java.util.function.ToLongFunction;
+
+import javax.annotation.Nullable;
+
+import com.github.llbrt.subtext.RunMetrics.Counter;
+import com.github.llbrt.subtext.RunMetrics.Phase;
+
+/**
+ * Metrics of the files processed by a command, as JSON: the metrics of each
+ * file, then for each phase the percentiles across the files and the totals of
+ * the counters.
+ */
+final class MetricsReport {
+
+	private static final int[] PERCENTILES = { 50, 90, 99, 100 };
+	private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "max" };
+
+	private final List<RunMetrics> files = new ArrayList<>();
+
+	synchronized void add(RunMetrics metrics) {
+		files.add(metrics);
+	}
+
+	synchronized List<RunMetrics> files() {
+		return List.copyOf(files);
+	}
+
+	/**
+	 * @param percentile between 1 and 100, nearest rank.
+	 * @return the percentile of the wall time of <code>phase</code> across the
+	 *         files, 0 if there is none.
+	 */
+	long nanos(Phase phase, int percentile) {
+		return percentile(metrics -> metrics.nanos(phase), percentile);
+	}
+
+	/**
+	 * Same as {@link #nanos(Phase, int)} for the allocated bytes.
+	 */
+	long allocatedBytes(Phase phase, int percentile) {
+		return percentile(metrics -> metrics.allocatedBytes(phase), percentile);
+	}
+
+	long total(Counter counter) {
+		return files().stream().mapToLong(metrics -> metrics.count(counter)).sum();
+	}
+
+	private long percentile(ToLongFunction<RunMetrics> value, int percentile) {
+		var values = files().stream().mapToLong(value).sorted().toArray();
+		if (values.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(percentile / 100.0 * values.length);
+		return values[Math.max(rank, 1) - 1];
+	}
+
+	String toJson() {
+		var metrics = files();
+		var json = new StringBuilder("{\"files\":[");
+		for (int i = 0; i < metrics.size(); i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append(metrics.get(i).toJson());
+		}
+		json.append("],\"summary\":{\"files\":").append(metrics.size()).append(",\"phases\":{");
+		for (var phase : Phase.values()) {
+			if (phase.ordinal() > 0) {
+				json.append(',');
+			}
+			json.append('"').append(phase.jsonName()).append("\":{\"nanos\":");
+			appendPercentiles(json, percentile -> nanos(phase, percentile));
+			json.append(",\"allocatedBytes\":");
+			appendPercentiles(json, percentile -> allocatedBytes(phase, percentile));
+			json.append('}');
+		}
+		json.append("},\"counters\":{");
+		for (var counter : Counter.values()) {
+			if (counter.ordinal() > 0) {
+				json.append(',');
+			}
+			json.append('"').append(counter.jsonName()).append("\":").append(total(counter));
+		}
+		return json.append("}}}").toString();
+	}
+
+	void write(Path file) throws IOException {
+		Files.writeString(file, toJson() + System.lineSeparator(), UTF_8);
+	}
+
+	private static void appendPercentiles(StringBuilder json, IntToLongFunction value) {
+		json.append('{');
+		for (int i = 0; i < PERCENTILES.length; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append('"').append(PERCENTILE_NAMES[i]).append("\":").append(value.applyAsLong(PERCENTILES[i]));
+		}
+		json.append('}');
+	}
+
+	/**
+	 * @return <code>value</code> as a JSON string, <code>null</code> if
+	 *         <code>null</code>.
+	 */
+	static String quote(@Nullable Object value) {
+		if (value == null) {
+			return "null";
+		}
+		var json = new StringBuilder("\"");
+		for (char c : value.toString().toCharArray()) {
+			switch (c) {
+			case '"' -> json.append("\\\"");
+			case '\\' -> json.append("\\\\");
+			case '\n' -> json.append("\\n");
+			case '\r' -> json.append("\\r");
+			case '\t' -> json.append("\\t");
+			default -> {
+				if (c < 0x20) {
+					json.append(String.format("\\u%04x", (int) c));
+				} else {
+					json.append(c);
+				}
+			}
+			}
+		}
+		return json.append('"').toString();
+	}
+}
@@ -0,0 +1,13 @@
+package com.github.llbrt.subtext;
+
+/**
+ * Failure to process a subtitle file; the message is meant for the user, the
+ * details have already been logged.
+ */
+final class ProcessingException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	ProcessingException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,111 @@
+package com.github.llbrt.subtext;
+
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+import javax.annotation.Nullable;
+
+import picocli.CommandLine.ITypeConverter;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.TypeConversionException;
+
+/**
+ * Options applied to each processed subtitle file, shared by the commands.
+ */
+final class ProcessingOptions {
+
+	@Option(names = { "-e", "--extend" }, description = "Extend subtitle duration (in milliseconds)", defaultValue = "0")
+	private int durationIncrement;
+
+	@Option(names = { "-s", "--shift" }, description = "Shift subtitle start (in milliseconds)", defaultValue = "0")
+	private int shiftStart;
+
+	@Option(names = { "--scale" }, description = "Multiply subtitle times by this factor, or by <from>/<to> to convert frame rates (e.g. 25/23.976)", defaultValue = "1", converter = ScaleConverter.class)
+	private double scale;
+
+	@Option(names = { "--anchors" }, description = "File containing anchor points 'source --> target' (one per line, same time format as srt file), times being interpolated between them")
+	private Path anchorsFile;
+
+	@Option(names = { "-i", "--ignore-count" }, description = "Don't verify counter when loading a SRT files", defaultValue = "false")
+	private boolean ignoreCount;
+
+	@Option(names = { "-m", "--mmap" }, description = "Map subtitle files in memory when loading them", defaultValue = "false")
+	private boolean mapped;
+
+	@Option(names = { "-C", "--cache" }, description = "Keep the texts parsed in '<subtitles>.cues' and reuse them while the subtitle file is unchanged", defaultValue = "false")
+	private boolean cache;
+
+	@Option(names = { "-L", "--lenient" }, description = "Skip invalid texts and repair overlaps instead of failing, see '<output>.repairs'", defaultValue = "false")
+	private boolean lenient;
+
+	@Option(names = { "--fallback-charset" }, description = "Charset of the subtitle files neither in UTF-8 nor in UTF-16 (default: ${DEFAULT-VALUE})", defaultValue = "windows-1252")
+	private Charset fallbackCharset;
+
+	@Option(names = { "--metrics" }, description = "Write the time spent and the bytes allocated by each phase to this file, as JSON")
+	private Path metricsFile;
+
+	int durationIncrement() {
+		return durationIncrement;
+	}
+
+	int shiftStart() {
+		return shiftStart;
+	}
+
+	double scale() {
+		return scale;
+	}
+
+	@Nullable
+	Path anchorsFile() {
+		return anchorsFile;
+	}
+
+	boolean ignoreCount() {
+		return ignoreCount;
+	}
+
+	boolean mapped() {
+		return mapped;
+	}
+
+	boolean cache() {
+		return cache;
+	}
+
+	boolean lenient() {
+		return lenient;
+	}
+
+	Charset fallbackCharset() {
+		return fallbackCharset;
+	}
+
+	@Nullable
+	Path metricsFile() {
+		return metricsFile;
+	}
+
+	/**
+	 * Scale given as a factor or as a ratio <code>&lt;from&gt;/&lt;to&gt;</code>.
+	 */
+	static final class ScaleConverter implements ITypeConverter<Double> {
+
+		@Override
+		public Double convert(String value) {
+			int slash = value.indexOf('/');
+			double scale;
+			try {
+				scale = slash < 0
+						? Double.parseDouble(value)
+						: Double.parseDouble(value.substring(0, slash)) / Double.parseDouble(value.substring(slash + 1));
+			} catch (NumberFormatException e) {
+				throw new TypeConversionException("'" + value + "' is not a factor nor a ratio");
+			}
+			if (!(scale > 0) || Double.isInfinite(scale)) {
+				throw new TypeConversionException("'" + value + "' is not a positive scale");
+			}
+			return scale;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.github.llbrt.subtext;
+
+import static java.util.Collections.unmodifiableList;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Problems found in a subtitle file processed in lenient mode, and how each
+ * one was repaired.
+ */
+final class RepairReport {
+
+	enum Action {
+		/** Invalid text skipped when loading, located by its line */
+		SKIPPED,
+		/** Display time reduced to avoid an overlap, located by its text counter */
+		CLAMPED,
+		/** Text removed, located by its text counter */
+		DROPPED,
+	}
+
+	record Repair(Action action, int position, String reason) {
+
+		@Override
+		public String toString() {
+			var location = action == Action.SKIPPED ? "Line #" : "Text #";
+			return location + position + ": " + action.name().toLowerCase() + ", " + reason;
+		}
+	}
+
+	private final List<Repair> repairs = new ArrayList<>();
+
+	/**
+	 * Records a text skipped because of <code>error</code>; the
+	 * <code>Line #</code> prefix of its message is removed.
+	 */
+	void skipped(int line, IllegalArgumentException error) {
+		var reason = String.valueOf(error.getMessage());
+		if (reason.startsWith("Line #")) {
+			reason = reason.substring(reason.indexOf(": ") + 2);
+		}
+		repairs.add(new Repair(Action.SKIPPED, line, reason));
+	}
+
+	void clamped(int count, String reason) {
+		repairs.add(new Repair(Action.CLAMPED, count, reason));
+	}
+
+	void dropped(int count, String reason) {
+		repairs.add(new Repair(Action.DROPPED, count, reason));
+	}
+
+	List<Repair> repairs() {
+		return unmodifiableList(repairs);
+	}
+
+	boolean isEmpty() {
+		return repairs.isEmpty();
+	}
+
+	/**
+	 * Writes the repairs to <code>file</code>, one per line.
+	 */
+	void write(Path file) throws IOException {
+		Files.write(file, repairs.stream().map(Repair::toString).toList(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,172 @@
+package com.github.llbrt.subtext;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * Wall time and allocated bytes of each phase of the processing of one file,
+ * and counters of the texts processed. Phases are measured as laps: the time
+ * since the previous lap (or {@link #mark()}) is added to the given phase.
+ * <p>
+ * Counters are always updated; timings only if the metrics are
+ * <code>timed</code>. Not thread safe, one instance per file.
+ */
+final class RunMetrics {
+
+	enum Phase {
+		LOAD, VALIDATE, EXTEND, SHIFT, RETIME, EXTRACT, SAVE;
+
+		String jsonName() {
+			return name().toLowerCase();
+		}
+	}
+
+	enum Counter {
+		PARSED("parsed"), DROPPED("dropped"), START_TRUNCATED("startTruncated"), END_TRUNCATED("endTruncated"), WRITTEN("written");
+
+		private final String jsonName;
+
+		Counter(String jsonName) {
+			this.jsonName = jsonName;
+		}
+
+		String jsonName() {
+			return jsonName;
+		}
+	}
+
+	@Nullable
+	private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+	private final boolean timed;
+	private final long[] nanos = new long[Phase.values().length];
+	private final long[] bytes = new long[Phase.values().length];
+	private final long[] counters = new long[Counter.values().length];
+
+	private @Nullable Path source;
+	private @Nullable Path destination;
+
+	private long lastNanos;
+	private long lastBytes;
+
+	RunMetrics(boolean timed) {
+		this.timed = timed;
+	}
+
+	@Nullable
+	private static com.sun.management.ThreadMXBean threads() {
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+				&& threads.isThreadAllocatedMemorySupported()) {
+			threads.setThreadAllocatedMemoryEnabled(true);
+			return threads;
+		}
+		return null;
+	}
+
+	boolean timed() {
+		return timed;
+	}
+
+	void setFiles(Path source, Path destination) {
+		this.source = source;
+		this.destination = destination;
+	}
+
+	@Nullable
+	Path source() {
+		return source;
+	}
+
+	@Nullable
+	Path destination() {
+		return destination;
+	}
+
+	/**
+	 * Starts the next lap.
+	 */
+	void mark() {
+		if (timed) {
+			lastNanos = System.nanoTime();
+			lastBytes = allocatedBytes();
+		}
+	}
+
+	/**
+	 * Adds the time and the bytes allocated since the last lap to
+	 * <code>phase</code>, and starts the next lap.
+	 */
+	void lap(Phase phase) {
+		if (timed) {
+			long now = System.nanoTime();
+			long allocated = allocatedBytes();
+			nanos[phase.ordinal()] += now - lastNanos;
+			bytes[phase.ordinal()] += allocated - lastBytes;
+			lastNanos = now;
+			lastBytes = allocated;
+		}
+	}
+
+	void increment(Counter counter) {
+		counters[counter.ordinal()]++;
+	}
+
+	void add(Counter counter, long value) {
+		counters[counter.ordinal()] += value;
+	}
+
+	/**
+	 * Resets the counters, the texts being processed again.
+	 */
+	void clearCounters() {
+		Arrays.fill(counters, 0);
+	}
+
+	long nanos(Phase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	/**
+	 * @return bytes allocated by the processing thread, <code>-1</code> if not
+	 *         supported by the JVM.
+	 */
+	long allocatedBytes(Phase phase) {
+		return THREADS == null ? -1 : bytes[phase.ordinal()];
+	}
+
+	long count(Counter counter) {
+		return counters[counter.ordinal()];
+	}
+
+	/**
+	 * @return the metrics as a JSON object.
+	 */
+	String toJson() {
+		var json = new StringBuilder();
+		json.append("{\"source\":").append(MetricsReport.quote(source));
+		json.append(",\"destination\":").append(MetricsReport.quote(destination));
+		json.append(",\"phases\":{");
+		for (var phase : Phase.values()) {
+			if (phase.ordinal() > 0) {
+				json.append(',');
+			}
+			json.append('"').append(phase.jsonName()).append("\":{\"nanos\":").append(nanos(phase))
+					.append(",\"allocatedBytes\":").append(allocatedBytes(phase)).append('}');
+		}
+		json.append("},\"counters\":{");
+		for (var counter : Counter.values()) {
+			if (counter.ordinal() > 0) {
+				json.append(',');
+			}
+			json.append('"').append(counter.jsonName()).append("\":").append(count(counter));
+		}
+		return json.append("}}").toString();
+	}
+
+	private static long allocatedBytes() {
+		return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+	}
+}
@@ -0,0 +1,169 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Long running server processing the command lines sent by the
+ * <code>client</code> command in a warm JVM.
+ */
+@Command(name = "serve", description = "Start a server processing the command lines sent by 'client'")
+final class ServerCommand implements Callable<Integer> {
+	private static final Logger logger = LoggerFactory.getLogger(ServerCommand.class);
+
+	private static final List<String> LOCAL_COMMANDS = List.of("serve", "client", "watch");
+
+	@Option(names = { "--socket" }, description = "Path of the Unix domain socket")
+	private Path socket = ServerProtocol.DEFAULT_SOCKET;
+
+	@Option(names = { "-t", "--threads" }, description = "Count of requests processed in parallel (default: count of processors)")
+	private Optional<Integer> threads;
+
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private volatile ServerSocketChannel server;
+
+	@Override
+	public Integer call() throws Exception {
+		if (isRunning(socket)) {
+			throw new IllegalStateException("A server is already listening on '" + socket + "'");
+		}
+		// Stale socket file
+		Files.deleteIfExists(socket);
+
+		var executor = Executors.newFixedThreadPool(Math.max(1, threads.orElse(Runtime.getRuntime().availableProcessors())));
+		var shutdownHook = new Thread(this::stopAndWait, "subfileprocessor-shutdown");
+		try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+			server.bind(UnixDomainSocketAddress.of(socket));
+			this.server = server;
+			Runtime.getRuntime().addShutdownHook(shutdownHook);
+			logger.info("Listening on '{}'", socket);
+
+			while (true) {
+				SocketChannel client;
+				try {
+					client = server.accept();
+				} catch (ClosedChannelException e) {
+					// Stopped
+					break;
+				}
+				executor.execute(() -> handle(client));
+			}
+		} finally {
+			// Let the running requests complete
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+			Files.deleteIfExists(socket);
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				// Already shutting down
+			}
+			logger.info("Server stopped");
+			stopped.countDown();
+		}
+		return 0;
+	}
+
+	/**
+	 * Stops accepting new requests.
+	 */
+	private void stop() {
+		var current = server;
+		if (current != null) {
+			try {
+				current.close();
+			} catch (IOException e) {
+				logger.warn("Failed to close '{}'", socket, e);
+			}
+		}
+	}
+
+	private void stopAndWait() {
+		stop();
+		try {
+			stopped.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void handle(SocketChannel channel) {
+		try (var reader = new BufferedReader(Channels.newReader(channel, UTF_8));
+				var writer = Channels.newWriter(channel, UTF_8)) {
+			var request = ServerProtocol.readRequest(reader);
+			if (request == null) {
+				// Connection test
+				return;
+			}
+			if (request.isStop()) {
+				logger.info("Stop requested");
+				ServerProtocol.writeResponse(writer, 0, "");
+				stop();
+				return;
+			}
+
+			var output = new StringWriter();
+			int exitCode = execute(request, new PrintWriter(output, true));
+			ServerProtocol.writeResponse(writer, exitCode, output.toString());
+		} catch (Exception e) {
+			logger.error("Failed to process request", e);
+		}
+	}
+
+	private static int execute(ServerProtocol.Request request, PrintWriter output) {
+		var arguments = request.arguments();
+		if (!arguments.isEmpty() && LOCAL_COMMANDS.contains(arguments.get(0))) {
+			output.println("Command '" + arguments.get(0) + "' can't be sent to the server");
+			return CommandLine.ExitCode.USAGE;
+		}
+		if (arguments.contains(SrtJob.STANDARD_STREAM.toString())) {
+			output.println("Standard input/output can't be used through the server");
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		// Relative paths are resolved against the client working directory
+		var workingDirectory = request.workingDirectory();
+		return new CommandLine(new SrtFileProcessor())
+				.registerConverter(Path.class, workingDirectory::resolve)
+				.setOut(output)
+				.setErr(output)
+				.setExecutionExceptionHandler((ex, commandLine, parseResult) -> {
+					commandLine.getErr().println(ex.getMessage());
+					return commandLine.getCommandSpec().exitCodeOnExecutionException();
+				})
+				.execute(arguments.toArray(String[]::new));
+	}
+
+	static boolean isRunning(Path socket) {
+		try (var channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+}
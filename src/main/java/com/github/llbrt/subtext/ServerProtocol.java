@@ -0,0 +1,101 @@
+package com.github.llbrt.subtext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Text protocol between <code>client</code> and <code>serve</code> commands,
+ * UTF-8 lines over a Unix domain socket.
+ * <p>
+ * Request: <code>RUN &lt;working directory&gt;</code>, then one argument per
+ * line, then an empty line; or <code>STOP</code>.<br>
+ * Response: the exit code on the first line, then the command output.
+ */
+final class ServerProtocol {
+
+	static final Path DEFAULT_SOCKET = Path.of(System.getProperty("java.io.tmpdir"), "subfileprocessor.sock");
+
+	private static final String RUN = "RUN ";
+	private static final String STOP = "STOP";
+
+	/**
+	 * @param arguments command line; <code>null</code> to stop the server.
+	 */
+	static record Request(Path workingDirectory, @Nullable List<String> arguments) {
+
+		boolean isStop() {
+			return arguments == null;
+		}
+	}
+
+	static void writeRun(Writer writer, Path workingDirectory, List<String> arguments) throws IOException {
+		writer.write(RUN + workingDirectory.toAbsolutePath() + "\n");
+		for (var argument : arguments) {
+			if (argument.isEmpty() || argument.indexOf('\n') >= 0) {
+				throw new IllegalArgumentException("Unsupported argument: '" + argument + "'");
+			}
+			writer.write(argument + "\n");
+		}
+		writer.write("\n");
+		writer.flush();
+	}
+
+	static void writeStop(Writer writer) throws IOException {
+		writer.write(STOP + "\n");
+		writer.flush();
+	}
+
+	/**
+	 * @return the request or <code>null</code> if the connection was closed
+	 *         without any request.
+	 */
+	@Nullable
+	static Request readRequest(BufferedReader reader) throws IOException {
+		var header = reader.readLine();
+		if (header == null) {
+			return null;
+		}
+		if (STOP.equals(header)) {
+			return new Request(Path.of(""), null);
+		}
+		if (!header.startsWith(RUN)) {
+			throw new IOException("Unexpected request: " + header);
+		}
+		var arguments = new ArrayList<String>();
+		String argument;
+		while ((argument = reader.readLine()) != null && !argument.isEmpty()) {
+			arguments.add(argument);
+		}
+		if (argument == null) {
+			throw new IOException("Unexpected end of request");
+		}
+		return new Request(Path.of(header.substring(RUN.length())), arguments);
+	}
+
+	static void writeResponse(Writer writer, int exitCode, String output) throws IOException {
+		writer.write(exitCode + "\n");
+		writer.write(output);
+		writer.flush();
+	}
+
+	/**
+	 * Reads the response, output copied to <code>output</code>.
+	 *
+	 * @return the exit code.
+	 */
+	static int readResponse(BufferedReader reader, Writer output) throws IOException {
+		var exitCode = reader.readLine();
+		if (exitCode == null) {
+			throw new IOException("Unexpected end of response");
+		}
+		reader.transferTo(output);
+		output.flush();
+		return Integer.parseInt(exitCode);
+	}
+}
@@ -0,0 +1,168 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.charset.StandardCharsets.UTF_16BE;
+import static java.nio.charset.StandardCharsets.UTF_16LE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import javax.annotation.Nullable;
+
+/**
+ * Detection of the charset of SRT contents from their first bytes, before any
+ * decoding: byte order mark, else UTF-16 without BOM (zero bytes of the ASCII
+ * counters and times), else UTF-8 if the bytes are valid UTF-8, else the
+ * fallback charset.
+ */
+final class SrtCharset {
+
+	/**
+	 * Bytes read from a stream to detect its charset.
+	 */
+	static final int SAMPLE_SIZE = 16 * 1024;
+
+	/**
+	 * Charset of most legacy subtitle files not in UTF-8.
+	 */
+	static final Charset DEFAULT_FALLBACK = Charset.forName("windows-1252");
+
+	// Bytes checked for zero bytes of UTF-16 without BOM
+	private static final int UTF16_SAMPLE_SIZE = 512;
+	private static final long NON_ASCII_MASK = 0x8080808080808080L;
+
+	/**
+	 * @param bomLength length of the byte order mark to skip, 0 if none.
+	 */
+	record Detection(Charset charset, int bomLength) {
+	}
+
+	private SrtCharset() {
+	}
+
+	/**
+	 * Detects the charset of the bytes from 0 to <code>limit</code> (exclusive)
+	 * of <code>buffer</code>, read with absolute gets.
+	 *
+	 * @param partial <code>true</code> if the bytes are the beginning of the
+	 *                contents: a truncated UTF-8 sequence at the end is valid.
+	 */
+	static Detection detect(ByteBuffer buffer, int limit, boolean partial, Charset fallback) {
+		if (startsWith(buffer, limit, 0xEF, 0xBB, 0xBF)) {
+			return new Detection(UTF_8, 3);
+		}
+		if (startsWith(buffer, limit, 0xFE, 0xFF)) {
+			return new Detection(UTF_16BE, 2);
+		}
+		if (startsWith(buffer, limit, 0xFF, 0xFE)) {
+			return new Detection(UTF_16LE, 2);
+		}
+
+		var utf16 = detectUtf16(buffer, limit);
+		if (utf16 != null) {
+			return new Detection(utf16, 0);
+		}
+		return new Detection(isUtf8(buffer, limit, partial) ? UTF_8 : fallback, 0);
+	}
+
+	/**
+	 * Checks the bytes are well-formed UTF-8: no overlong encoding, surrogate or
+	 * code point above U+10FFFF. ASCII bytes are checked 8 at a time.
+	 *
+	 * @param partial <code>true</code> if a truncated sequence at the end is
+	 *                valid.
+	 */
+	static boolean isUtf8(ByteBuffer buffer, int limit, boolean partial) {
+		int i = 0;
+		while (i < limit) {
+			if (i + Long.BYTES <= limit && (buffer.getLong(i) & NON_ASCII_MASK) == 0) {
+				i += Long.BYTES;
+				continue;
+			}
+			int b = buffer.get(i) & 0xFF;
+			if (b < 0x80) {
+				i++;
+				continue;
+			}
+
+			int length;
+			int min = 0x80;
+			int max = 0xBF;
+			if (b >= 0xC2 && b <= 0xDF) {
+				length = 2;
+			} else if (b >= 0xE0 && b <= 0xEF) {
+				length = 3;
+				if (b == 0xE0) {
+					// Overlong
+					min = 0xA0;
+				} else if (b == 0xED) {
+					// Surrogates
+					max = 0x9F;
+				}
+			} else if (b >= 0xF0 && b <= 0xF4) {
+				length = 4;
+				if (b == 0xF0) {
+					// Overlong
+					min = 0x90;
+				} else if (b == 0xF4) {
+					// Above U+10FFFF
+					max = 0x8F;
+				}
+			} else {
+				return false;
+			}
+
+			for (int k = 1; k < length; k++) {
+				if (i + k >= limit) {
+					return partial;
+				}
+				int next = buffer.get(i + k) & 0xFF;
+				if (next < (k == 1 ? min : 0x80) || next > (k == 1 ? max : 0xBF)) {
+					return false;
+				}
+			}
+			i += length;
+		}
+		return true;
+	}
+
+	/**
+	 * @return UTF-16 with the byte order given by the position of the zero bytes,
+	 *         <code>null</code> if they are not all at even or odd positions.
+	 */
+	@Nullable
+	private static Charset detectUtf16(ByteBuffer buffer, int limit) {
+		int size = Math.min(limit, UTF16_SAMPLE_SIZE) & ~1;
+		int evenZeros = 0;
+		int oddZeros = 0;
+		for (int i = 0; i < size; i += 2) {
+			if (buffer.get(i) == 0) {
+				evenZeros++;
+			}
+			if (buffer.get(i + 1) == 0) {
+				oddZeros++;
+			}
+		}
+		// Mostly ASCII: at least half of the characters have a zero byte
+		int characters = size / 2;
+		if (evenZeros == 0 && characters > 0 && oddZeros * 2 >= characters) {
+			return UTF_16LE;
+		}
+		if (oddZeros == 0 && characters > 0 && evenZeros * 2 >= characters) {
+			return UTF_16BE;
+		}
+		return null;
+	}
+
+	private static boolean startsWith(ByteBuffer buffer, int limit, int... bytes) {
+		if (limit < bytes.length) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if ((buffer.get(i) & 0xFF) != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
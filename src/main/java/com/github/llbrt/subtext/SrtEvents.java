@@ -0,0 +1,183 @@
+package com.github.llbrt.subtext;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder events of the processing of subtitle files, all in the
+ * <code>Subtext</code> category and named <code>subtext.*</code>.
+ */
+final class SrtEvents {
+	private static final String CATEGORY = "Subtext";
+
+	private SrtEvents() {
+	}
+
+	@Name("subtext.Load")
+	@Label("Load Subtitles")
+	@Category(CATEGORY)
+	static final class Load extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Texts")
+		int texts;
+
+		@Label("Skipped Texts")
+		@Description("Invalid texts skipped in lenient mode")
+		int skipped;
+
+		@Label("Size")
+		@DataAmount
+		long bytes;
+
+		@Label("Mapped")
+		boolean mapped;
+	}
+
+	@Name("subtext.Validate")
+	@Label("Validate Subtitles")
+	@Description("Sort texts and check overlaps")
+	@Category(CATEGORY)
+	static final class Validate extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Texts")
+		int texts;
+
+		@Label("Repairs")
+		@Description("Overlaps repaired in lenient mode")
+		int repairs;
+	}
+
+	@Name("subtext.Extend")
+	@Label("Extend Subtitles")
+	@Category(CATEGORY)
+	static final class Extend extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Texts")
+		int texts;
+
+		@Label("Increment")
+		@Timespan(Timespan.MILLISECONDS)
+		long increment;
+	}
+
+	@Name("subtext.Shift")
+	@Label("Shift Subtitles")
+	@Category(CATEGORY)
+	static final class Shift extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Texts")
+		int texts;
+
+		@Label("Delta")
+		@Timespan(Timespan.MILLISECONDS)
+		long delta;
+	}
+
+	@Name("subtext.Retime")
+	@Label("Retime Subtitles")
+	@Description("Extend, scale and shift in a single sweep")
+	@Category(CATEGORY)
+	static final class Retime extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Texts")
+		int texts;
+
+		@Label("Increment")
+		@Timespan(Timespan.MILLISECONDS)
+		long increment;
+
+		@Label("Scale")
+		double scale;
+
+		@Label("Delta")
+		@Timespan(Timespan.MILLISECONDS)
+		long delta;
+	}
+
+	@Name("subtext.ExtractSegment")
+	@Label("Extract Time Segment")
+	@Description("Texts kept for one time segment")
+	@Category(CATEGORY)
+	static final class ExtractSegment extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Segment Start")
+		@Timespan(Timespan.MILLISECONDS)
+		long segmentStart;
+
+		@Label("Segment End")
+		@Timespan(Timespan.MILLISECONDS)
+		long segmentEnd;
+
+		@Label("Texts")
+		int texts;
+
+		@Label("Start Truncated")
+		@Description("Texts starting before the segment")
+		int startTruncated;
+
+		@Label("End Truncated")
+		@Description("Texts ending after the segment")
+		int endTruncated;
+	}
+
+	@Name("subtext.Save")
+	@Label("Save Subtitles")
+	@Category(CATEGORY)
+	static final class Save extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Texts")
+		int texts;
+
+		@Label("Size")
+		@DataAmount
+		long bytes;
+	}
+
+	@Name("subtext.Process")
+	@Label("Process Subtitle File")
+	@Description("Whole processing of a file, in a single pass or in memory")
+	@Category(CATEGORY)
+	static final class Process extends Event {
+		@Label("Source")
+		String source;
+
+		@Label("Destination")
+		String destination;
+
+		@Label("Single Pass")
+		boolean streaming;
+
+		@Label("Texts Read")
+		int textsRead;
+
+		@Label("Texts Written")
+		int textsWritten;
+
+		@Label("Bytes Read")
+		@DataAmount
+		long bytesRead;
+
+		@Label("Bytes Written")
+		@DataAmount
+		long bytesWritten;
+	}
+}
@@ -1,19 +1,12 @@
 package com.github.llbrt.subtext;
 
-import static com.github.llbrt.subtext.Utils.duration;
-import static java.nio.file.StandardOpenOption.CREATE;
-import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
-import static java.util.Collections.unmodifiableList;
-
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Duration;
-import java.time.LocalTime;
-import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.ListIterator;
+
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,82 +17,244 @@ final class SrtFile {
 	private static final Logger logger = LoggerFactory.getLogger(SrtFile.class);
 
 	private final Path file;
-	private final List<SrtText> texts = new ArrayList<>();
+	private final CueTable cues;
+	private RunMetrics metrics = new RunMetrics(false);
+	private Charset fallbackCharset = SrtCharset.DEFAULT_FALLBACK;
+	private boolean cache = false;
+	// Built on demand, dropped when the texts change
+	private @Nullable CueIndex index;
 
 	SrtFile(Path file) {
-		this.file = file;
+		this(file, new CueTable());
 	}
 
-	SrtFile(Path file, List<SrtText> texts) {
+	SrtFile(Path file, CueTable cues) {
 		this.file = file;
-		this.texts.addAll(texts);
+		this.cues = cues;
+	}
+
+	CueTable cues() {
+		return cues;
+	}
+
+	/**
+	 * Sets the metrics updated when loading and extracting the time segments.
+	 */
+	void setMetrics(RunMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Sets the charset of the files loaded neither in UTF-8 nor in UTF-16.
+	 */
+	void setFallbackCharset(Charset fallbackCharset) {
+		this.fallbackCharset = fallbackCharset;
+	}
+
+	/**
+	 * Enables the cache of the texts parsed, see {@link CueCache}: written when
+	 * the file is parsed, read instead of the file while it is unchanged. Not
+	 * used in lenient mode.
+	 */
+	void setCache(boolean cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * @return a read-only view of the texts, created on demand.
+	 */
+	List<SrtText> texts() {
+		return cues.texts();
+	}
+
+	/**
+	 * @return the index of the texts by time, built once the texts are checked
+	 *         and kept until they change.
+	 */
+	CueIndex index() {
+		if (index == null) {
+			checkTexts();
+			index = CueIndex.of(cues);
+		}
+		return index;
 	}
 
 	void load(boolean verifyCount) throws IOException {
-		texts.clear();
-		var fileLines = Files.readAllLines(file);
-		if (fileLines.isEmpty()) {
-			// Nothing to do
-			logger.info("File empty");
+		load(verifyCount, null);
+	}
+
+	/**
+	 * Loads the texts; in lenient mode (<code>report</code> not
+	 * <code>null</code>), invalid texts are skipped and overlaps are repaired
+	 * instead of failing.
+	 */
+	void load(boolean verifyCount, @Nullable RepairReport report) throws IOException {
+		if (loadCached(verifyCount, report)) {
+			return;
+		}
+		var stamp = cacheStamp(report);
+		try (var reader = SrtReader.open(file, fallbackCharset)) {
+			read(reader, verifyCount, report, false, stamp);
+		}
+	}
+
+	/**
+	 * Same as {@link #load(boolean)}, the file being mapped in memory and parsed
+	 * without decoding the texts.
+	 */
+	void loadMapped(boolean verifyCount) throws IOException {
+		loadMapped(verifyCount, null);
+	}
+
+	/**
+	 * Same as {@link #load(boolean, RepairReport)}, the file being mapped in
+	 * memory.
+	 */
+	void loadMapped(boolean verifyCount, @Nullable RepairReport report) throws IOException {
+		if (loadCached(verifyCount, report)) {
+			return;
+		}
+		if (!SrtMappedReader.canMap(file)) {
+			logger.info("File too large to be mapped");
+			load(verifyCount, report);
 			return;
 		}
+		var stamp = cacheStamp(report);
+		try (var reader = SrtMappedReader.open(file, fallbackCharset)) {
+			read(reader, verifyCount, report, reader instanceof SrtMappedReader, stamp);
+		}
+	}
 
-		fileLines = Utils.sanitize(fileLines);
+	/**
+	 * @return <code>false</code> if there is no valid cache to load.
+	 */
+	private boolean loadCached(boolean verifyCount, @Nullable RepairReport report) throws IOException {
+		if (!cache || report != null) {
+			return false;
+		}
+		var reader = CueCache.open(file, verifyCount, fallbackCharset);
+		if (reader == null) {
+			return false;
+		}
+		try (reader) {
+			read(reader, verifyCount, null, true, null);
+		}
+		return true;
+	}
 
-		int currentId = 0;
-		for (int i = 0; i < fileLines.size(); i++) {
-			// Should remain at least 3 lines
-			if ((fileLines.size() - i) < 3) {
-				throw new IllegalArgumentException("Line #" + i + ": unexpected file line count");
-			}
-			int nextId = Integer.valueOf(fileLines.get(i));
-			if (verifyCount && nextId != (currentId + 1)) {
-				throw new IllegalArgumentException("Line #" + i + ": unexpected index=" + nextId);
-			}
-			currentId++;
+	/**
+	 * @return the state of the file before being parsed, <code>null</code> if
+	 *         its cache is not written.
+	 */
+	@Nullable
+	private CueCache.Stamp cacheStamp(@Nullable RepairReport report) throws IOException {
+		return cache && report == null ? CueCache.Stamp.of(file) : null;
+	}
 
-			var timeSegment = fileLines.get(++i);
+	/**
+	 * Writes the cache of the texts loaded, once validated.
+	 */
+	private void writeCache(@Nullable CueCache.Stamp stamp, boolean verifyCount) {
+		if (stamp == null) {
+			return;
+		}
+		try {
+			CueCache.write(file, stamp, cues, verifyCount, fallbackCharset);
+		} catch (IOException e) {
+			logger.warn("Failed to write cache of '{}'", file, e);
+		}
+	}
 
-			var subtitle = new ArrayList<String>();
-			do {
-				if ((i + 1) == fileLines.size()) {
-					throw new IllegalArgumentException("Line #" + i + ": unexpected end of file");
-				}
-				var line = fileLines.get(++i);
-				if (line.isBlank()) {
+	/**
+	 * @param stamp state of the file before being parsed, to write its cache
+	 *              once the texts are validated; <code>null</code> if not
+	 *              written.
+	 */
+	private void read(CueReader reader, boolean verifyCount, @Nullable RepairReport report, boolean mapped, @Nullable CueCache.Stamp stamp) throws IOException {
+		var loadEvent = new SrtEvents.Load();
+		loadEvent.begin();
+		index = null;
+		cues.clear();
+		int repairs = report == null ? 0 : report.repairs().size();
+		if (report == null && reader instanceof SrtMappedReader mappedReader) {
+			// Large files parsed in parallel
+			mappedReader.readAll(cues, verifyCount);
+		}
+		while (true) {
+			int lineCount = cues.lines().size();
+			try {
+				if (!reader.nextText(cues, verifyCount)) {
 					break;
 				}
-				subtitle.add(line);
-			} while (true);
+			} catch (IllegalArgumentException e) {
+				if (report == null) {
+					throw e;
+				}
+				// Lines of the invalid text already added
+				cues.lines().truncate(lineCount);
+				report.skipped(reader.line(), e);
+				reader.skipText();
+			}
+		}
+		metrics.add(RunMetrics.Counter.PARSED, cues.size());
+		metrics.lap(RunMetrics.Phase.LOAD);
+		logger.debug("Loaded {} text lines, {} distinct", cues.lines().size(), cues.lines().distinctSize());
+		if (loadEvent.shouldCommit()) {
+			loadEvent.file = String.valueOf(file);
+			loadEvent.texts = cues.size();
+			loadEvent.skipped = report == null ? 0 : report.repairs().size() - repairs;
+			loadEvent.bytes = Files.size(file);
+			loadEvent.mapped = mapped;
+			loadEvent.commit();
+		}
 
-			texts.add(newSrtText(i, currentId, timeSegment, subtitle));
+		if (cues.isEmpty()) {
+			// Nothing to do
+			logger.info("File empty");
+			writeCache(stamp, verifyCount);
+			return;
 		}
 
-		checkTexts();
+		var validateEvent = new SrtEvents.Validate();
+		validateEvent.begin();
+		repairs = report == null ? 0 : report.repairs().size();
+		if (report == null) {
+			checkTexts();
+		} else {
+			repairTexts(report);
+		}
+		metrics.lap(RunMetrics.Phase.VALIDATE);
+		if (validateEvent.shouldCommit()) {
+			validateEvent.file = String.valueOf(file);
+			validateEvent.texts = cues.size();
+			validateEvent.repairs = report == null ? 0 : report.repairs().size() - repairs;
+			validateEvent.commit();
+		}
+		writeCache(stamp, verifyCount);
 
-		logger.info("Found {} elements", texts.size());
+		logger.info("Found {} elements", cues.size());
 	}
 
 	void save() throws IOException {
 		checkTexts();
 
 		// Write contents to the destination file
-		try (var writer = Files.newBufferedWriter(file, CREATE, TRUNCATE_EXISTING)) {
-			for (int i = 0; i < texts.size(); i++) {
-				var text = texts.get(i);
-				writer.write(Integer.toString(i + 1));
-				writer.newLine();
-				writer.write(text.time().toString());
-				writer.newLine();
-				for (var line : text.texts()) {
-					writer.write(line);
-					writer.newLine();
-				}
-				writer.newLine();
+		var event = new SrtEvents.Save();
+		event.begin();
+		try (var writer = SrtWriter.create(file)) {
+			for (int i = 0; i < cues.size(); i++) {
+				writer.write(cues, i);
 			}
+			writer.flush();
+			event.bytes = writer.bytes();
+		}
+		if (event.shouldCommit()) {
+			event.file = String.valueOf(file);
+			event.texts = cues.size();
+			event.commit();
 		}
 
-		logger.info("Wrote {} elements in '{}'", texts.size(), file);
+		logger.info("Wrote {} elements in '{}'", cues.size(), file);
 	}
 
 	/**
@@ -108,11 +263,35 @@ final class SrtFile {
 	 * @param duration extension in milliseconds.
 	 */
 	void extendTexts(int duration) {
-		for (int i = 0; i < texts.size(); i++) {
-			texts.set(i, texts.get(i).extend(duration));
+		extendTexts(duration, null);
+	}
+
+	/**
+	 * Extends display time by <code>duration</code> milliseconds; in lenient
+	 * mode, each text ends at the latest just before the next one.
+	 *
+	 * @param duration extension in milliseconds.
+	 */
+	void extendTexts(int duration, @Nullable RepairReport report) {
+		var event = new SrtEvents.Extend();
+		event.begin();
+		index = null;
+		for (int i = 0; i < cues.size(); i++) {
+			long end = cues.end(i) + duration;
+			if (report != null && i + 1 < cues.size() && end >= cues.start(i + 1)) {
+				end = Math.max(cues.end(i), cues.start(i + 1) - 1);
+				report.clamped(cues.count(i), "extension overlaps text #" + cues.count(i + 1) + ", now " + new Value(cues.start(i), end));
+			}
+			cues.setTime(i, cues.start(i), end);
 		}
 		// Verify text after update
 		checkTexts();
+		if (event.shouldCommit()) {
+			event.file = String.valueOf(file);
+			event.texts = cues.size();
+			event.increment = duration;
+			event.commit();
+		}
 		logger.info("Display time extended by {} milliseconds", duration);
 	}
 
@@ -122,101 +301,197 @@ final class SrtFile {
 	 * @param delta shift in milliseconds.
 	 */
 	void shiftTexts(int delta) {
-		for (int i = 0; i < texts.size(); i++) {
-			texts.set(i, texts.get(i).shift(delta));
+		shiftTexts(delta, null);
+	}
+
+	/**
+	 * Shift start time by <code>delta</code> milliseconds. May be positive or
+	 * negative; in lenient mode, texts ending before 00:00:00,000 are dropped and
+	 * texts starting before are clamped.
+	 *
+	 * @param delta shift in milliseconds.
+	 */
+	void shiftTexts(int delta, @Nullable RepairReport report) {
+		var event = new SrtEvents.Shift();
+		event.begin();
+		index = null;
+		int kept = 0;
+		for (int i = 0; i < cues.size(); i++) {
+			long start = cues.start(i) + delta;
+			long end = cues.end(i) + delta;
+			if (start < 0) {
+				if (report == null) {
+					throw new IllegalArgumentException("Text #" + cues.count(i) + " starts before 00:00:00,000");
+				}
+				if (end < 0) {
+					report.dropped(cues.count(i), "ends before 00:00:00,000 once shifted");
+					continue;
+				}
+				start = 0;
+				report.clamped(cues.count(i), "starts before 00:00:00,000 once shifted, now " + new Value(start, end));
+			}
+			cues.move(i, kept);
+			cues.setTime(kept, start, end);
+			kept++;
 		}
+		cues.truncate(kept);
 		// Verify text after update
+		if (event.shouldCommit()) {
+			event.file = String.valueOf(file);
+			event.texts = cues.size();
+			event.delta = delta;
+			event.commit();
+		}
 		logger.info("Display start time shifted by {} milliseconds", delta);
 	}
 
-	private void checkTexts() {
+	/**
+	 * Extends, scales and shifts display times in a single sweep over the sorted
+	 * texts, checking that they don't overlap nor start before 00:00:00,000.
+	 *
+	 * @throws IllegalArgumentException if a text is invalid once remapped; texts
+	 *                                  from it are left unchanged.
+	 */
+	void retimeTexts(TimeTransform transform) {
+		var event = new SrtEvents.Retime();
+		event.begin();
+		index = null;
+		int invalid = cues.retime(transform);
+		if (invalid >= 0) {
+			if (transform.start(cues.start(invalid)) < 0) {
+				throw new IllegalArgumentException("Text #" + cues.count(invalid) + " starts before 00:00:00,000");
+			}
+			throw new IllegalArgumentException("Text #" + cues.count(invalid - 1) + " overlap with next one");
+		}
+		if (event.shouldCommit()) {
+			event.file = String.valueOf(file);
+			event.texts = cues.size();
+			event.increment = transform.extend();
+			event.scale = transform.scale();
+			event.delta = transform.shift();
+			event.commit();
+		}
+		logger.info("Display times remapped: {}", transform);
+	}
+
+	void checkTexts() {
 		// Make sure texts are sorted and don't overlap
-		texts.sort(SrtText.COMPARATOR);
-		var current = texts.get(0);
-		for (int i = 1; i < texts.size(); i++) {
-			final var next = texts.get(i);
-			if (current.time().overlap(next.time())) {
-				throw new IllegalArgumentException("Text #" + current.count() + " overlap with next one");
+		cues.sort();
+		for (int i = 1; i < cues.size(); i++) {
+			if (cues.start(i) <= cues.end(i - 1)) {
+				throw new IllegalArgumentException("Text #" + cues.count(i - 1) + " overlap with next one");
 			}
-			current = next;
 		}
 	}
 
-	List<SrtText> extractTimeSegments(TimeSegments ts) {
+	/**
+	 * Sorts texts and repairs overlaps in a single pass: a text overlapping the
+	 * next one ends just before it, or is dropped if both start at the same time.
+	 */
+	private void repairTexts(RepairReport report) {
+		cues.sort();
+		int kept = 0;
+		for (int i = 0; i < cues.size(); i++) {
+			if (kept > 0 && cues.start(i) <= cues.end(kept - 1)) {
+				int previous = kept - 1;
+				long end = cues.start(i) - 1;
+				if (end < cues.start(previous)) {
+					report.dropped(cues.count(previous), "starts with text #" + cues.count(i));
+					kept--;
+				} else {
+					report.clamped(cues.count(previous), "overlaps text #" + cues.count(i) + ", now " + new Value(cues.start(previous), end));
+					cues.setTime(previous, cues.start(previous), end);
+				}
+			}
+			cues.move(i, kept);
+			kept++;
+		}
+		cues.truncate(kept);
+	}
+
+	/**
+	 * @return a new table of the texts kept in the time segments, moved to the
+	 *         time of their segment in the output; all the texts without
+	 *         segment. Lines are shared with this file.
+	 */
+	CueTable extractTimeSegments(TimeSegments ts) {
 		var segments = ts.segments();
-		if (segments.isEmpty() || texts.isEmpty()) {
-			return unmodifiableList(texts);
+		if (segments.isEmpty() || cues.isEmpty()) {
+			// New table, as with segments
+			return cues.copy();
 		}
 
-		var result = new ArrayList<SrtText>();
-		var delta = Duration.ofNanos(0);
+		var result = new CueTable(cues.lines());
+		long delta = 0;
+		int startTruncated = 0;
+		int endTruncated = 0;
 
-		var iterator = texts.listIterator();
+		int index = 0;
 		for (Value value : segments) {
-
-			var nextDelta = delta.plus(duration(value));
-
-			// Go to the next text inside the interval
-			while (true) {
-				var currentText = nextSrtText(iterator, value);
-				if (currentText == null || !currentText.time().overlap(value)) {
+			var event = new SrtEvents.ExtractSegment();
+			event.begin();
+			int first = result.size();
+
+			long nextDelta = delta + value.duration();
+
+			// Go through the texts inside the interval
+			while (index < cues.size()) {
+				long textStart = cues.start(index);
+				long textEnd = cues.end(index);
+				if (textStart > value.end()) {
+					// After the current time segment, maybe ok for the next segment
 					break;
 				}
+				if (textEnd < value.start()) {
+					// Before the current time segment, dropped
+					index++;
+					continue;
+				}
 
 				// Get new start/end times
-				var start = LocalTime.of(0, 0).plus(delta);
-				var duration = duration(currentText.time());
-				if (value.start().isBefore(currentText.time().start())) {
-					start = start.plus(duration(value.start(), currentText.time().start()));
+				long start = delta;
+				long duration = textEnd - textStart;
+				if (value.start() < textStart) {
+					start += textStart - value.start();
 				} else {
-					logger.warn("Display time of text #{} reduced (start)", currentText.count());
-					duration = duration.minus(duration(currentText.time().start(), value.start()));
+					// Display time reduced
+					event.startTruncated++;
+					duration -= value.start() - textStart;
 				}
 
-				LocalTime end;
-				if (currentText.time().end().isBefore(value.end())) {
-					end = start.plus(duration);
+				long end;
+				if (textEnd < value.end()) {
+					end = start + duration;
 				} else {
-					end = LocalTime.of(0, 0).plus(nextDelta);
-					logger.warn("Display time of text #{} reduced (end)", currentText.count());
+					// Display time reduced
+					end = nextDelta;
+					event.endTruncated++;
 				}
 
-				result.add(new SrtText(result.size() + 1, new SrtTime.Value(start, end), currentText.texts()));
+				result.add(result.size() + 1, start, end, cues.firstLine(index), cues.lineCount(index));
+				index++;
+			}
+
+			startTruncated += event.startTruncated;
+			endTruncated += event.endTruncated;
+			if (event.shouldCommit()) {
+				event.file = String.valueOf(file);
+				event.segmentStart = value.start();
+				event.segmentEnd = value.end();
+				event.texts = result.size() - first;
+				event.commit();
 			}
 
 			// Update delta for the next segment
 			delta = nextDelta;
 		}
 
-		logger.info("New text list ready, {} texts dropped", texts.size() - result.size());
+		metrics.add(RunMetrics.Counter.DROPPED, cues.size() - result.size());
+		metrics.add(RunMetrics.Counter.START_TRUNCATED, startTruncated);
+		metrics.add(RunMetrics.Counter.END_TRUNCATED, endTruncated);
+		logger.info("New text list ready, {} texts dropped, display time reduced for {} (start) and {} (end)", cues.size() - result.size(), startTruncated,
+				endTruncated);
 
 		return result;
 	}
-
-	private SrtText nextSrtText(ListIterator<SrtText> iterator, SrtTime.Value value) {
-		while (iterator.hasNext()) {
-			var currentText = iterator.next();
-			if (currentText.time().overlap(value)) {
-				return currentText;
-			}
-			if (currentText.time().start().isAfter(value.end())) {
-				// After the current time segment, maybe ok for the next segment
-				iterator.previous();
-				break;
-			}
-		}
-		return null;
-	}
-
-	private SrtText newSrtText(int line, int count, String timeInterval, List<String> text) {
-		if (text.isEmpty()) {
-			throw new IllegalArgumentException("Line #" + line + ": no text found");
-		}
-		try {
-			Value value = SrtTime.readSrtTimeValue(line, timeInterval);
-			return new SrtText(count, value, text);
-		} catch (DateTimeParseException e) {
-			throw new IllegalArgumentException("Line #" + line + ": unexpected time interval: " + timeInterval, e);
-		}
-	}
 }
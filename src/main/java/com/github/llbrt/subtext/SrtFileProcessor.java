@@ -1,6 +1,10 @@
 package com.github.llbrt.subtext;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -10,99 +14,164 @@ import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.ExecutionException;
 import picocli.CommandLine.IExecutionExceptionHandler;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
 import picocli.CommandLine.Parameters;
 import picocli.CommandLine.ParseResult;
 import picocli.CommandLine.Spec;
 
-@Command(name = "subfileprocessor")
+@Command(name = "subfileprocessor", subcommands = { BatchCommand.class, CutCommand.class, WatchCommand.class, ServerCommand.class, ClientCommand.class })
 public final class SrtFileProcessor implements Runnable {
 
-	private static final Logger logger = LoggerFactory.getLogger(SrtFileProcessor.class);
+	@Mixin
+	private ProcessingOptions options;
 
-	@Option(names = { "-e", "--extend" }, description = "Extend subtitle duration (in milliseconds)", defaultValue = "0")
-	private int durationIncrement;
-
-	@Option(names = { "-s", "--shift" }, description = "Shift subtitle start (in milliseconds)", defaultValue = "0")
-	private int shiftStart;
-
-	@Option(names = { "-i", "--ignore-count" }, description = "Don't verify counter when loading a SRT files", defaultValue = "false")
-	private boolean ignoreCount;
-
-	@Option(names = { "-o", "--output" }, description = "Output file")
+	@Option(names = { "-o", "--output" }, description = "Output file, for a single subtitle file")
 	private Optional<Path> outputFile;
 
-	@Parameters(index = "0", description = "Path to the subtitle file")
-	private Path subtitles;
+	@Option(names = { "-S", "--segments" }, description = "File containing the list of segments to keep, shared by all the subtitle files")
+	private Path sharedSegments;
+
+	@Option(names = { "-t", "--threads" }, description = "Count of subtitle files processed in parallel (default: count of processors)")
+	private Optional<Integer> threads;
 
-	@Parameters(index = "1", arity = "0..1", description = "File containing the list of segments to keep (one per line, same time format as srt file)")
-	private Path segments;
+	// Not required by picocli so that sub-commands can be used
+	@Parameters(arity = "0..*", paramLabel = "<subtitles>", description = {
+			"Path to the subtitle file, then optionally the file containing the list of segments to keep (one per line, same time format as srt file)",
+			"With -S, paths to several subtitle files processed in parallel, each one to <subtitles>.new.srt" })
+	private List<Path> files = new ArrayList<>();
 
 	@Spec
 	private CommandSpec spec;
 
 	@Override
 	public void run() {
-		// Load file
-		var inputFile = new SrtFile(subtitles);
-		try {
-			inputFile.load(!ignoreCount);
-		} catch (Exception e) {
-			logger.error("Failed to load '{}'", subtitles, e);
-			throw new ExecutionException(spec.commandLine(), "Invalid input file");
+		if (files.isEmpty()) {
+			throw new ParameterException(spec.commandLine(), "Missing required parameter: '<subtitles>'");
 		}
 
-		// Load time segments
-		var timeSegments = new TimeSegments(segments);
-		try {
-			timeSegments.load();
-		} catch (Exception e) {
-			logger.error("Failed to load '{}'", segments, e);
-			throw new ExecutionException(spec.commandLine(), "Invalid input file");
+		List<Path> subtitles;
+		Path segments;
+		if (sharedSegments != null) {
+			subtitles = files;
+			segments = sharedSegments;
+		} else if (files.size() <= 2) {
+			subtitles = files.subList(0, 1);
+			segments = files.size() == 2 ? files.get(1) : null;
+		} else {
+			throw new ParameterException(spec.commandLine(), "Several subtitle files require the segments file to be given with '-S'");
+		}
+		if (outputFile.isPresent() && subtitles.size() > 1) {
+			throw new ParameterException(spec.commandLine(), "'-o' requires a single subtitle file");
+		}
+		if (subtitles.contains(SrtJob.STANDARD_STREAM) || outputFile.filter(SrtJob.STANDARD_STREAM::equals).isPresent()) {
+			processStream(subtitles, segments);
+			return;
 		}
 
-		if (durationIncrement > 0) {
-			// Update subtitle display length
-			try {
-				inputFile.extendTexts(durationIncrement);
-			} catch (Exception e) {
-				logger.error("Failed to extend subtitles of '{}'", subtitles, e);
-				throw new ExecutionException(spec.commandLine(), "Duration increment too large");
-			}
+		var destinations = new LinkedHashMap<Path, Path>();
+		for (var file : subtitles) {
+			destinations.put(file, outputFile.orElse(SrtJob.defaultDestination(file)));
 		}
-		if (shiftStart != 0) {
-			// Update subtitle start/end times
-			try {
-				inputFile.shiftTexts(shiftStart);
-			} catch (Exception e) {
-				logger.error("Failed to shift subtitles of '{}'", subtitles, e);
-				throw new ExecutionException(spec.commandLine(), "Shifting subtitles failed");
+		var report = new MetricsReport();
+		try {
+			// Segments parsed once for all the files
+			var timeSegments = SrtJob.loadTimeSegments(segments);
+			var anchors = SrtJob.loadAnchors(options.anchorsFile());
+			int threadCount = threads.orElse(Runtime.getRuntime().availableProcessors());
+			var failures = new SrtJob(options, timeSegments, anchors).processAll(destinations, threadCount, report);
+			if (failures.size() == 1 && subtitles.size() == 1) {
+				throw new ExecutionException(spec.commandLine(), failures.values().iterator().next());
+			}
+			failures.forEach((file, message) -> logger().error("Failed to process '{}': {}", file, message));
+			if (!failures.isEmpty()) {
+				throw new ExecutionException(spec.commandLine(), failures.size() + " subtitle file(s) out of " + subtitles.size() + " failed");
 			}
+		} catch (ProcessingException e) {
+			throw new ExecutionException(spec.commandLine(), e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExecutionException(spec.commandLine(), "Interrupted");
+		} finally {
+			writeMetrics(report);
+		}
+	}
+
+	/**
+	 * Processes a single file in a single pass, '-' standing for the standard
+	 * input or output. Texts read from the standard input are written to the
+	 * standard output by default.
+	 */
+	private void processStream(List<Path> subtitles, Path segments) {
+		if (subtitles.size() > 1) {
+			throw new ParameterException(spec.commandLine(), "Standard input/output requires a single subtitle file");
+		}
+		if (options.lenient()) {
+			throw new ParameterException(spec.commandLine(), "'--lenient' can't be used with standard input/output");
+		}
+		var source = subtitles.get(0);
+		var destination = outputFile.orElse(source.equals(SrtJob.STANDARD_STREAM) ? SrtJob.STANDARD_STREAM : SrtJob.defaultDestination(source));
+		if (destination.equals(SrtJob.STANDARD_STREAM)) {
+			// Keep the standard output for the texts
+			LoggingConfigurator.logToStandardError();
 		}
 
-		var newTexts = inputFile.extractTimeSegments(timeSegments);
-		var destination = outputFile.orElse(subtitles.resolveSibling(subtitles.getFileName().toString() + ".new.srt"));
-		var newSrt = new SrtFile(destination, newTexts);
+		var report = new MetricsReport();
 		try {
-			newSrt.save();
-		} catch (Exception e) {
-			logger.error("Failed to save new texts to '{}'", destination, e);
-			throw new ExecutionException(spec.commandLine(), "Invalid contents or output file");
+			var timeSegments = SrtJob.loadTimeSegments(segments);
+			var anchors = SrtJob.loadAnchors(options.anchorsFile());
+			report.add(new SrtJob(options, timeSegments, anchors).processStream(source, destination));
+		} catch (ProcessingException e) {
+			throw new ExecutionException(spec.commandLine(), e.getMessage());
+		} finally {
+			writeMetrics(report);
 		}
 	}
 
-	public static void main(String... args) {
-		int exitCode = new CommandLine(new SrtFileProcessor())
+	private void writeMetrics(MetricsReport report) {
+		if (options.metricsFile() == null) {
+			return;
+		}
+		try {
+			report.write(options.metricsFile());
+		} catch (IOException e) {
+			logger().error("Failed to write metrics to '{}'", options.metricsFile(), e);
+			throw new ExecutionException(spec.commandLine(), "Invalid metrics file");
+		}
+	}
+
+	/**
+	 * @return the command line, errors being logged.
+	 */
+	static CommandLine newCommandLine() {
+		return new CommandLine(new SrtFileProcessor())
 				.setExecutionExceptionHandler(new IExecutionExceptionHandler() {
 					@Override
 					public int handleExecutionException(Exception ex, CommandLine commandLine, ParseResult parseResult) throws Exception {
-						logger.error(ex.getMessage());
+						logger().error(ex.getMessage());
 						return commandLine.getCommandSpec().exitCodeOnExecutionException();
 					}
 
-				})
-				.execute(args);
+				});
+	}
+
+	/**
+	 * Not kept in a static field, so that logging is not initialized when the
+	 * class is loaded.
+	 */
+	private static Logger logger() {
+		return LoggerFactory.getLogger(SrtFileProcessor.class);
+	}
+
+	public static void main(String... args) {
+		// Initialize logging while the command line is built and parsed
+		var logging = new Thread(LoggerFactory::getILoggerFactory, "logging-init");
+		logging.setDaemon(true);
+		logging.start();
+
+		int exitCode = newCommandLine().execute(args);
 		System.exit(exitCode);
 	}
 }
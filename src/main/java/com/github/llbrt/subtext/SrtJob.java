@@ -0,0 +1,371 @@
+package com.github.llbrt.subtext;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processing of subtitle files: load, extend, shift, extract the time segments
+ * and save. Time segments are loaded once and shared by the files processed
+ * concurrently.
+ */
+final class SrtJob {
+	private static final Logger logger = LoggerFactory.getLogger(SrtJob.class);
+
+	/**
+	 * Path standing for the standard input or output.
+	 */
+	static final Path STANDARD_STREAM = Path.of("-");
+
+	private final ProcessingOptions options;
+	private final TimeSegments timeSegments;
+	private final TimeTransform transform;
+
+	SrtJob(ProcessingOptions options, TimeSegments timeSegments) {
+		this(options, timeSegments, null);
+	}
+
+	SrtJob(ProcessingOptions options, TimeSegments timeSegments, @Nullable TimeAnchors anchors) {
+		this.options = options;
+		this.timeSegments = timeSegments;
+		this.transform = TimeTransform.of(options, anchors);
+	}
+
+	/**
+	 * @return the default output file: <code>&lt;subtitles&gt;.new.srt</code>.
+	 */
+	static Path defaultDestination(Path subtitles) {
+		return subtitles.resolveSibling(subtitles.getFileName().toString() + ".new.srt");
+	}
+
+	static TimeSegments loadTimeSegments(Path segments) throws ProcessingException {
+		var timeSegments = new TimeSegments(segments);
+		try {
+			timeSegments.load();
+		} catch (Exception e) {
+			logger.error("Failed to load '{}'", segments, e);
+			throw new ProcessingException("Invalid input file");
+		}
+		return timeSegments;
+	}
+
+	/**
+	 * @return the anchors of <code>anchors</code>, <code>null</code> if no file
+	 *         given.
+	 */
+	@Nullable
+	static TimeAnchors loadAnchors(@Nullable Path anchors) throws ProcessingException {
+		if (anchors == null) {
+			return null;
+		}
+		try {
+			return TimeAnchors.load(anchors);
+		} catch (Exception e) {
+			logger.error("Failed to load '{}'", anchors, e);
+			throw new ProcessingException("Invalid anchors file");
+		}
+	}
+
+	/**
+	 * Processes each source to its destination, <code>threads</code> files at a
+	 * time; a single file is processed in the calling thread.
+	 *
+	 * @param destinations destination of each source file.
+	 * @param report receives the metrics of the files processed successfully.
+	 * @return failure messages, by source file.
+	 */
+	Map<Path, String> processAll(Map<Path, Path> destinations, int threads, MetricsReport report) throws InterruptedException {
+		var failures = new LinkedHashMap<Path, String>();
+		if (destinations.size() == 1) {
+			var entry = destinations.entrySet().iterator().next();
+			try {
+				report.add(process(entry.getKey(), entry.getValue()));
+			} catch (ProcessingException e) {
+				failures.put(entry.getKey(), e.getMessage());
+			}
+			return failures;
+		}
+
+		var executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, destinations.size())));
+		try {
+			var results = new LinkedHashMap<Path, Future<?>>();
+			destinations.forEach((source, destination) -> results.put(source, executor.submit(() -> {
+				report.add(process(source, destination));
+				return null;
+			})));
+
+			for (var result : results.entrySet()) {
+				try {
+					result.getValue().get();
+				} catch (ExecutionException e) {
+					var cause = e.getCause();
+					failures.put(result.getKey(), cause instanceof ProcessingException ? cause.getMessage() : cause.toString());
+				}
+			}
+			return failures;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the repair report of <code>destination</code>, written in lenient
+	 *         mode: <code>&lt;destination&gt;.repairs</code>.
+	 */
+	static Path reportDestination(Path destination) {
+		return destination.resolveSibling(destination.getFileName().toString() + ".repairs");
+	}
+
+	/**
+	 * Processes <code>subtitles</code> in a single pass when texts are sorted,
+	 * in memory otherwise or in lenient mode. The destination is written through
+	 * a temporary file and only replaced on success.
+	 *
+	 * @return the metrics of the processing, timed if a metrics file is
+	 *         requested.
+	 */
+	RunMetrics process(Path subtitles, Path destination) throws ProcessingException {
+		var metrics = new RunMetrics(options.metricsFile() != null);
+		metrics.setFiles(subtitles, destination);
+		metrics.mark();
+		var event = new SrtEvents.Process();
+		event.begin();
+		event.streaming = !options.lenient();
+		var temporary = destination.resolveSibling(destination.getFileName() + ".tmp-" + ProcessHandle.current().pid() + "-" + Thread.currentThread().getId());
+		try {
+			if (options.lenient()) {
+				var report = new RepairReport();
+				processInMemory(subtitles, temporary, report, metrics);
+				writeReport(report, destination);
+			} else if (!processStreaming(subtitles, temporary, destination, metrics)) {
+				// Times of the aborted pass are kept
+				metrics.clearCounters();
+				event.streaming = false;
+				processInMemory(subtitles, temporary, null, metrics);
+			}
+			Files.move(temporary, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			metrics.lap(RunMetrics.Phase.SAVE);
+			if (event.shouldCommit()) {
+				event.source = subtitles.toString();
+				event.destination = destination.toString();
+				event.textsRead = (int) metrics.count(RunMetrics.Counter.PARSED);
+				event.textsWritten = (int) metrics.count(RunMetrics.Counter.WRITTEN);
+				event.bytesRead = Files.size(subtitles);
+				event.bytesWritten = Files.size(destination);
+				event.commit();
+			}
+			return metrics;
+		} catch (IOException e) {
+			logger.error("Failed to save new texts to '{}'", destination, e);
+			throw new ProcessingException("Invalid contents or output file");
+		} finally {
+			try {
+				Files.deleteIfExists(temporary);
+			} catch (IOException e) {
+				logger.warn("Failed to delete '{}'", temporary, e);
+			}
+		}
+	}
+
+	/**
+	 * Processes <code>subtitles</code> in a single pass, each text being written
+	 * as soon as processed; {@link #STANDARD_STREAM} stands for the standard
+	 * input or output, flushed after each text and left open. Memory usage does
+	 * not depend on the count of texts, but they have to be sorted.
+	 *
+	 * @return the metrics of the processing, timed if a metrics file is
+	 *         requested.
+	 */
+	RunMetrics processStream(Path subtitles, Path destination) throws ProcessingException {
+		var metrics = new RunMetrics(options.metricsFile() != null);
+		metrics.setFiles(subtitles, destination);
+		metrics.mark();
+		var event = new SrtEvents.Process();
+		event.begin();
+		event.streaming = true;
+		var source = streamName(subtitles);
+		var target = streamName(destination);
+
+		SrtReader reader;
+		try {
+			reader = subtitles.equals(STANDARD_STREAM) ? SrtReader.open(Channels.newChannel(System.in), options.fallbackCharset())
+					: SrtReader.open(subtitles, options.fallbackCharset());
+		} catch (IOException e) {
+			logger.error("Failed to load '{}'", source, e);
+			throw new ProcessingException("Invalid input file");
+		}
+		SrtWriter writer = null;
+		try {
+			// System.out flushes its buffer on each write
+			writer = destination.equals(STANDARD_STREAM) ? new SrtWriter(Channels.newChannel(System.out), true) : SrtWriter.create(destination);
+			// Flushed by the pipeline, only the file channels are closed
+			new SrtPipeline(options, timeSegments, transform, metrics).run(reader, source, writer, target);
+		} catch (SrtPipeline.UnsortedException e) {
+			logger.error("Failed to load '{}': {}", source, e.getMessage());
+			throw new ProcessingException("Texts not sorted, can't be processed as a stream");
+		} catch (IOException e) {
+			logger.error("Failed to save new texts to '{}'", target, e);
+			throw new ProcessingException("Invalid contents or output file");
+		} finally {
+			if (!subtitles.equals(STANDARD_STREAM)) {
+				closeQuietly(reader, subtitles);
+			}
+			if (writer != null && !destination.equals(STANDARD_STREAM)) {
+				closeQuietly(writer, destination);
+			}
+		}
+
+		if (event.shouldCommit()) {
+			event.source = source;
+			event.destination = target;
+			event.textsRead = (int) metrics.count(RunMetrics.Counter.PARSED);
+			event.textsWritten = (int) metrics.count(RunMetrics.Counter.WRITTEN);
+			event.bytesWritten = writer.bytes();
+			event.commit();
+		}
+		return metrics;
+	}
+
+	private static String streamName(Path file) {
+		return file.equals(STANDARD_STREAM) ? "<standard stream>" : file.toString();
+	}
+
+	private static void closeQuietly(AutoCloseable closeable, Path file) {
+		try {
+			closeable.close();
+		} catch (Exception e) {
+			logger.warn("Failed to close '{}'", file, e);
+		}
+	}
+
+	/**
+	 * @return <code>false</code> if texts are not sorted, or if the cache is
+	 *         enabled but not valid yet: nothing is processed.
+	 */
+	private boolean processStreaming(Path subtitles, Path temporary, Path destination, RunMetrics metrics) throws ProcessingException {
+		CueReader reader;
+		try {
+			if (options.cache()) {
+				reader = CueCache.open(subtitles, !options.ignoreCount(), options.fallbackCharset());
+				if (reader == null) {
+					logger.info("No valid cache, processing in memory");
+					return false;
+				}
+			} else {
+				reader = options.mapped() && SrtMappedReader.canMap(subtitles) ? SrtMappedReader.open(subtitles, options.fallbackCharset())
+						: SrtReader.open(subtitles, options.fallbackCharset());
+			}
+			if (reader instanceof SrtMappedReader mappedReader) {
+				// Texts copied from the mapped file to the output
+				mappedReader.setPassthrough(SrtWriter.LINE_SEPARATOR);
+			}
+		} catch (IOException e) {
+			logger.error("Failed to load '{}'", subtitles, e);
+			throw new ProcessingException("Invalid input file");
+		}
+		try (reader; var writer = SrtWriter.create(temporary)) {
+			new SrtPipeline(options, timeSegments, transform, metrics).run(reader, subtitles, writer, destination);
+			return true;
+		} catch (SrtPipeline.UnsortedException e) {
+			logger.info("{}, processing in memory", e.getMessage());
+			return false;
+		} catch (IOException e) {
+			logger.error("Failed to save new texts to '{}'", destination, e);
+			throw new ProcessingException("Invalid contents or output file");
+		}
+	}
+
+	private void processInMemory(Path subtitles, Path destination, @Nullable RepairReport report, RunMetrics metrics) throws ProcessingException {
+		// Load file
+		var inputFile = new SrtFile(subtitles);
+		inputFile.setMetrics(metrics);
+		inputFile.setFallbackCharset(options.fallbackCharset());
+		inputFile.setCache(options.cache());
+		try {
+			if (options.mapped()) {
+				inputFile.loadMapped(!options.ignoreCount(), report);
+			} else {
+				inputFile.load(!options.ignoreCount(), report);
+			}
+		} catch (Exception e) {
+			logger.error("Failed to load '{}'", subtitles, e);
+			throw new ProcessingException("Invalid input file");
+		}
+
+		if (report == null && !transform.isIdentity()) {
+			// Update subtitle display length and start/end times at once
+			try {
+				inputFile.retimeTexts(transform);
+			} catch (Exception e) {
+				logger.error("Failed to retime subtitles of '{}'", subtitles, e);
+				throw new ProcessingException("Retiming subtitles failed");
+			}
+			metrics.lap(RunMetrics.Phase.RETIME);
+		} else if (report != null) {
+			if (options.durationIncrement() > 0) {
+				// Update subtitle display length
+				try {
+					inputFile.extendTexts(options.durationIncrement(), report);
+				} catch (Exception e) {
+					logger.error("Failed to extend subtitles of '{}'", subtitles, e);
+					throw new ProcessingException("Duration increment too large");
+				}
+				metrics.lap(RunMetrics.Phase.EXTEND);
+			}
+			if (transform.remaps()) {
+				// Remapped alone, between extend and shift reporting their repairs
+				try {
+					inputFile.retimeTexts(transform.remapOnly());
+				} catch (Exception e) {
+					logger.error("Failed to remap subtitles of '{}'", subtitles, e);
+					throw new ProcessingException("Remapping subtitles failed");
+				}
+				metrics.lap(RunMetrics.Phase.RETIME);
+			}
+			if (options.shiftStart() != 0) {
+				// Update subtitle start/end times
+				try {
+					inputFile.shiftTexts(options.shiftStart(), report);
+				} catch (Exception e) {
+					logger.error("Failed to shift subtitles of '{}'", subtitles, e);
+					throw new ProcessingException("Shifting subtitles failed");
+				}
+				metrics.lap(RunMetrics.Phase.SHIFT);
+			}
+		}
+
+		var newCues = inputFile.extractTimeSegments(timeSegments);
+		metrics.lap(RunMetrics.Phase.EXTRACT);
+		var newSrt = new SrtFile(destination, newCues);
+		try {
+			newSrt.save();
+		} catch (Exception e) {
+			logger.error("Failed to save new texts to '{}'", destination, e);
+			throw new ProcessingException("Invalid contents or output file");
+		}
+		metrics.add(RunMetrics.Counter.WRITTEN, newCues.size());
+		metrics.lap(RunMetrics.Phase.SAVE);
+	}
+
+	private static void writeReport(RepairReport report, Path destination) throws IOException {
+		var reportFile = reportDestination(destination);
+		if (report.isEmpty()) {
+			Files.deleteIfExists(reportFile);
+			return;
+		}
+		report.write(reportFile);
+		logger.warn("{} repair(s) done, see '{}'", report.repairs().size(), reportFile);
+	}
+}
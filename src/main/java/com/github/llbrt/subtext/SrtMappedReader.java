@@ -0,0 +1,475 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reader of SRT contents mapped in memory: counters, time intervals and line
+ * terminators are found by scanning bytes, text lines are copied as UTF-8
+ * without being decoded, or even kept in the mapped buffer in passthrough
+ * mode. Same checks and errors as {@link SrtReader}.
+ */
+final class SrtMappedReader implements CueReader {
+
+	/**
+	 * Size from which texts are read in parallel by {@link #readAll}.
+	 */
+	static final int PARALLEL_MIN_SIZE = 4 * 1024 * 1024;
+	private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+	// Chunks per thread, to balance the chunks of uneven cost
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final ByteBuffer buffer;
+	private final int limit;
+
+	// Start of the next line
+	private int position;
+	// Index, start and end (exclusive, without terminator) of the last line read
+	private int line = -1;
+	private int lineStart;
+	private int lineEnd;
+	// Count of texts read so far
+	private int count = 0;
+
+	// Output line separator of the texts kept in the buffer, null to copy the lines
+	@Nullable
+	private byte[] passthroughSeparator;
+	@Nullable
+	private ByteBuffer rawText;
+
+	/**
+	 * @param bomLength length of the UTF-8 byte order mark to skip, 0 if none.
+	 */
+	SrtMappedReader(ByteBuffer buffer, int bomLength) {
+		this(buffer, bomLength, 0);
+	}
+
+	/**
+	 * @param count counter of the text before the first one.
+	 */
+	private SrtMappedReader(ByteBuffer buffer, int bomLength, int count) {
+		this.buffer = buffer;
+		this.limit = buffer.limit();
+		this.position = bomLength;
+		this.count = count;
+	}
+
+	/**
+	 * @return <code>false</code> if the file is too large to be mapped.
+	 */
+	static boolean canMap(Path file) throws IOException {
+		try (var channel = FileChannel.open(file, READ)) {
+			return channel.size() <= Integer.MAX_VALUE;
+		}
+	}
+
+	static CueReader open(Path file) throws IOException {
+		return open(file, SrtCharset.DEFAULT_FALLBACK);
+	}
+
+	/**
+	 * Maps <code>file</code> in memory; the mapping remains valid once the reader
+	 * is closed. The whole file is checked to be UTF-8: other contents are read
+	 * by a {@link SrtReader}, decoded with the charset detected.
+	 *
+	 * @param fallback charset of the contents neither UTF-8 nor UTF-16.
+	 */
+	static CueReader open(Path file, Charset fallback) throws IOException {
+		var channel = FileChannel.open(file, READ);
+		try {
+			var buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			var detection = SrtCharset.detect(buffer, buffer.limit(), false, fallback);
+			if (detection.charset().equals(UTF_8)) {
+				channel.close();
+				return new SrtMappedReader(buffer, detection.bomLength());
+			}
+			return new SrtReader(channel.position(detection.bomLength()), detection.charset());
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public int line() {
+		return line;
+	}
+
+	/**
+	 * Keeps the lines of the texts in the mapped buffer, see
+	 * {@link #rawText()}, when they are separated by <code>lineSeparator</code>.
+	 * Other texts have their lines copied to the table as usual.
+	 */
+	void setPassthrough(byte[] lineSeparator) {
+		this.passthroughSeparator = lineSeparator;
+	}
+
+	@Override
+	@Nullable
+	public ByteBuffer rawText() {
+		return rawText;
+	}
+
+	@Override
+	public boolean nextText(CueTable cues, boolean verifyCount) {
+		if (!nextLine()) {
+			return false;
+		}
+		int nextId = parseCounter();
+		if (verifyCount && nextId != (count + 1)) {
+			// Following texts are verified against this one
+			count = nextId;
+			throw new IllegalArgumentException("Line #" + line + ": unexpected index=" + nextId);
+		}
+		count++;
+
+		if (!nextLine()) {
+			throw new IllegalArgumentException("Line #" + line + ": unexpected file line count");
+		}
+		int timeStart = lineStart;
+		int timeEnd = lineEnd;
+
+		var lines = cues.lines();
+		int firstLine = lines.size();
+		int lineCount = 0;
+		int textStart = lineStart;
+		int textEnd = lineEnd;
+		boolean raw = passthroughSeparator != null;
+		rawText = null;
+		do {
+			if (!nextLine()) {
+				if (lineCount == 0) {
+					throw new IllegalArgumentException("Line #" + line + ": unexpected file line count");
+				}
+				throw new IllegalArgumentException("Line #" + line + ": unexpected end of file");
+			}
+			if (isBlankLine()) {
+				break;
+			}
+			if (raw) {
+				if (lineCount == 0) {
+					textStart = lineStart;
+				} else if (!isPassthroughSeparator(textEnd, lineStart)) {
+					// Line terminators to be replaced
+					raw = false;
+					addLines(lines, textStart, textEnd);
+				}
+			}
+			if (!raw) {
+				lines.add(buffer, lineStart, lineEnd);
+			}
+			textEnd = lineEnd;
+			lineCount++;
+		} while (true);
+
+		if (lineCount == 0) {
+			throw new IllegalArgumentException("Line #" + line + ": no text found");
+		}
+		if (raw) {
+			rawText = buffer.slice(textStart, textEnd - textStart);
+		}
+		addText(cues, timeStart, timeEnd, firstLine, lineCount);
+		return true;
+	}
+
+	/**
+	 * Reads all the remaining texts, in parallel for large contents; same texts
+	 * and errors as calling {@link #nextText(CueTable, boolean)} up to the end.
+	 * Not meant for lenient loading: the line of an error is not kept.
+	 */
+	void readAll(CueTable cues, boolean verifyCount) {
+		int size = limit - position;
+		int chunks = ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD;
+		readAll(cues, verifyCount, size < PARALLEL_MIN_SIZE ? size : Math.max(MIN_CHUNK_SIZE, size / chunks));
+	}
+
+	/**
+	 * Splits the remaining texts in chunks of about <code>chunkSize</code> bytes,
+	 * starting at a counter line after an empty line, parsed on the common
+	 * fork-join pool then appended in order. Counters are checked within each
+	 * chunk, then across chunks. On any error, texts are read again
+	 * sequentially to report the same error as the sequential reading.
+	 */
+	void readAll(CueTable cues, boolean verifyCount, int chunkSize) {
+		var bounds = chunkBounds(chunkSize);
+		if (bounds.size() > 2) {
+			var tasks = new ArrayList<ForkJoinTask<CueTable>>();
+			for (int i = 0; i + 1 < bounds.size(); i++) {
+				int from = bounds.get(i);
+				int to = bounds.get(i + 1);
+				tasks.add(ForkJoinPool.commonPool().submit(() -> readChunk(from, to, verifyCount)));
+			}
+			try {
+				var tables = new ArrayList<CueTable>(tasks.size());
+				for (var task : tasks) {
+					tables.add(task.join());
+				}
+				if (!verifyCount || countsFollow(tables)) {
+					int read = 0;
+					for (var table : tables) {
+						cues.addAll(table, verifyCount ? 0 : count + read);
+						read += table.size();
+					}
+					count += read;
+					line = -1;
+					position = limit;
+					return;
+				}
+			} catch (IllegalArgumentException e) {
+				// Read again below for the error
+				tasks.forEach(task -> task.cancel(false));
+			}
+		}
+
+		while (nextText(cues, verifyCount)) {
+			// Next text
+		}
+	}
+
+	/**
+	 * @return texts between <code>from</code> and <code>to</code>, counters
+	 *         verified from the first one when <code>verifyCount</code>.
+	 */
+	private CueTable readChunk(int from, int to, boolean verifyCount) {
+		var chunk = new SrtMappedReader(buffer.slice(from, to - from), 0, 0);
+		if (verifyCount && chunk.nextLine()) {
+			chunk.count = chunk.parseCounter() - 1;
+			chunk.position = 0;
+			chunk.line = -1;
+		}
+		var table = new CueTable();
+		while (chunk.nextText(table, verifyCount)) {
+			// Next text
+		}
+		return table;
+	}
+
+	/**
+	 * @return <code>true</code> if the first counter of each chunk follows the
+	 *         last one of the previous chunk, the first one following the
+	 *         texts already read.
+	 */
+	private boolean countsFollow(ArrayList<CueTable> tables) {
+		int previous = count;
+		for (var table : tables) {
+			if (table.isEmpty()) {
+				continue;
+			}
+			if (table.count(0) != previous + 1) {
+				return false;
+			}
+			previous = table.count(table.size() - 1);
+		}
+		return true;
+	}
+
+	/**
+	 * @return start of the chunks from the current position, then the limit.
+	 */
+	private ArrayList<Integer> chunkBounds(int chunkSize) {
+		var bounds = new ArrayList<Integer>();
+		bounds.add(position);
+		long next = (long) position + Math.max(1, chunkSize);
+		while (next < limit) {
+			int start = nextTextStart((int) next);
+			if (start < 0) {
+				break;
+			}
+			bounds.add(start);
+			next = (long) start + Math.max(1, chunkSize);
+		}
+		bounds.add(limit);
+		return bounds;
+	}
+
+	/**
+	 * @return start of the first line from <code>from</code> made of digits only
+	 *         and following an empty line, -1 if none.
+	 */
+	private int nextTextStart(int from) {
+		int start = from;
+		while (start < limit) {
+			// Move to the start of a line
+			while (start < limit && !isLineStart(start)) {
+				start++;
+			}
+			int end = start;
+			while (end < limit && buffer.get(end) >= '0' && buffer.get(end) <= '9') {
+				end++;
+			}
+			if (end > start && end < limit && (buffer.get(end) == '\n' || buffer.get(end) == '\r') && followsBlankLine(start)) {
+				return start;
+			}
+			start = end + 1;
+		}
+		return -1;
+	}
+
+	private boolean isLineStart(int index) {
+		byte previous = buffer.get(index - 1);
+		return previous == '\n' || (previous == '\r' && buffer.get(index) != '\n');
+	}
+
+	/**
+	 * @return <code>true</code> if the line before the one starting at
+	 *         <code>start</code> is blank.
+	 */
+	private boolean followsBlankLine(int start) {
+		int end = start - 1;
+		if (buffer.get(end) == '\n' && end > position && buffer.get(end - 1) == '\r') {
+			end--;
+		}
+		int lineStart = end;
+		while (lineStart > position && buffer.get(lineStart - 1) != '\n' && buffer.get(lineStart - 1) != '\r') {
+			lineStart--;
+		}
+		return isBlank(lineStart, end);
+	}
+
+	@Override
+	public void skipText() {
+		if (line >= 0 && isBlankLine()) {
+			return;
+		}
+		while (nextLine() && !isBlankLine()) {
+			// Next line
+		}
+	}
+
+	@Override
+	public void close() {
+		// Nothing to release, the mapping is released by the garbage collector
+	}
+
+	private void addText(CueTable cues, int timeStart, int timeEnd, int firstLine, int lineCount) {
+		int separator = SrtTime.indexOfSeparator(buffer, timeStart, timeEnd);
+		if (separator < 0) {
+			throw new IllegalArgumentException("Line #" + line + ": unexpected timestamp: " + text(timeStart, timeEnd));
+		}
+		try {
+			long start = SrtTime.parseMillis(buffer, timeStart, separator);
+			long end = SrtTime.parseMillis(buffer, separator + SrtTime.SEPARATOR_LENGTH, timeEnd);
+			if (end < start) {
+				throw new IllegalArgumentException("Line #" + line + ": invalid timestamp: " + text(timeStart, timeEnd) + " (end before start)");
+			}
+			cues.add(count, start, end, firstLine, lineCount);
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Line #" + line + ": unexpected time interval: " + text(timeStart, timeEnd), e);
+		}
+	}
+
+	/**
+	 * Moves to the next line; terminators are <code>\n</code>, <code>\r</code>
+	 * or <code>\r\n</code>.
+	 *
+	 * @return <code>false</code> at the end of the buffer.
+	 */
+	private boolean nextLine() {
+		if (position >= limit) {
+			return false;
+		}
+		int i = position;
+		while (i < limit) {
+			byte b = buffer.get(i);
+			if (b == '\n' || b == '\r') {
+				break;
+			}
+			i++;
+		}
+		lineStart = position;
+		lineEnd = i;
+		if (i < limit && buffer.get(i) == '\r' && i + 1 < limit && buffer.get(i + 1) == '\n') {
+			i++;
+		}
+		position = i + 1;
+		line++;
+		return true;
+	}
+
+	private boolean isPassthroughSeparator(int from, int to) {
+		if (to - from != passthroughSeparator.length) {
+			return false;
+		}
+		for (int i = 0; i < passthroughSeparator.length; i++) {
+			if (buffer.get(from + i) != passthroughSeparator[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the lines between <code>from</code> and <code>to</code>, split at the
+	 * line terminators.
+	 */
+	private void addLines(TextLines lines, int from, int to) {
+		int start = from;
+		for (int i = from; i < to; i++) {
+			byte b = buffer.get(i);
+			if (b == '\n' || b == '\r') {
+				lines.add(buffer, start, i);
+				if (b == '\r' && i + 1 < to && buffer.get(i + 1) == '\n') {
+					i++;
+				}
+				start = i + 1;
+			}
+		}
+		lines.add(buffer, start, to);
+	}
+
+	private boolean isBlankLine() {
+		return isBlank(lineStart, lineEnd);
+	}
+
+	/**
+	 * Same as {@link String#isBlank()} on the decoded line: ASCII bytes are
+	 * checked as is, lines with other characters are decoded.
+	 */
+	private boolean isBlank(int from, int to) {
+		for (int i = from; i < to; i++) {
+			byte b = buffer.get(i);
+			if (b < 0) {
+				return text(from, to).isBlank();
+			}
+			if (!(b == ' ' || b == '\t' || b == 0x0B || b == '\f' || (b >= 0x1C && b <= 0x1F))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Same as {@link Integer#parseInt(String)} on the decoded line: up to 9 ASCII
+	 * digits are parsed as is, other counters (sign, Unicode digits, more
+	 * digits...) are decoded.
+	 */
+	private int parseCounter() {
+		int value = 0;
+		boolean simple = lineEnd > lineStart && lineEnd - lineStart < 10;
+		for (int i = lineStart; simple && i < lineEnd; i++) {
+			int digit = buffer.get(i) - '0';
+			simple = digit >= 0 && digit <= 9;
+			value = value * 10 + digit;
+		}
+		return simple ? value : Integer.parseInt(text(lineStart, lineEnd));
+	}
+
+	private String text(int from, int to) {
+		var bytes = new byte[to - from];
+		buffer.get(from, bytes);
+		return new String(bytes, UTF_8);
+	}
+}
@@ -0,0 +1,292 @@
+package com.github.llbrt.subtext;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single pass processing of sorted texts: each text read is extended, scaled,
+ * shifted, cut by the time segments, renumbered and written before the next
+ * one is read. Overlaps are checked against the previous text only, so memory
+ * usage depends on the largest text and the cost is linear.
+ * <p>
+ * Same results and invalid texts as loading a {@link SrtFile} and calling
+ * {@link SrtFile#retimeTexts(TimeTransform)},
+ * {@link SrtFile#extractTimeSegments(TimeSegments)} and {@link SrtFile#save()},
+ * as long as the texts are sorted.
+ */
+final class SrtPipeline {
+	private static final Logger logger = LoggerFactory.getLogger(SrtPipeline.class);
+
+	/**
+	 * Texts are not sorted, they have to be processed in memory.
+	 */
+	static final class UnsortedException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		UnsortedException(String message) {
+			super(message);
+		}
+	}
+
+	private final ProcessingOptions options;
+	private final List<SrtTime.Value> segments;
+	// Anchors and scale, extend and shift being applied step by step
+	private final TimeTransform remap;
+	private final RunMetrics metrics;
+
+	// Current text, alone in its table
+	private final CueTable cue = new CueTable();
+
+	// Previous text read
+	private int previousCount;
+	private long previousStart;
+	private long previousEnd;
+	private long previousRemappedEnd;
+	private int read = 0;
+
+	// Current segment, its start in the output and its event
+	private int segmentIndex = 0;
+	private long delta = 0;
+	private @Nullable SrtEvents.ExtractSegment segmentEvent;
+
+	// Previous text written
+	private long previousOutputEnd;
+
+	SrtPipeline(ProcessingOptions options, TimeSegments timeSegments) {
+		this(options, timeSegments, TimeTransform.of(options), new RunMetrics(false));
+	}
+
+	/**
+	 * @param transform times remap, built from <code>options</code>.
+	 * @param metrics   updated for each text, the phases being interleaved.
+	 */
+	SrtPipeline(ProcessingOptions options, TimeSegments timeSegments, TimeTransform transform, RunMetrics metrics) {
+		this.options = options;
+		this.segments = timeSegments.segments();
+		this.remap = transform.remapOnly();
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Processes all the texts of <code>reader</code>.
+	 *
+	 * @param source name of the source, for the logs.
+	 * @param destination name of the destination, for the logs.
+	 * @throws UnsortedException if texts are not sorted; the texts before have
+	 *                           already been written.
+	 */
+	void run(CueReader reader, Object source, SrtWriter writer, Object destination) throws ProcessingException, UnsortedException {
+		while (true) {
+			cue.clear();
+			try {
+				if (!reader.nextText(cue, !options.ignoreCount())) {
+					metrics.lap(RunMetrics.Phase.LOAD);
+					break;
+				}
+				metrics.increment(RunMetrics.Counter.PARSED);
+				metrics.lap(RunMetrics.Phase.LOAD);
+				checkRead();
+				metrics.lap(RunMetrics.Phase.VALIDATE);
+			} catch (IOException | IllegalArgumentException e) {
+				logger.error("Failed to load '{}'", source, e);
+				throw new ProcessingException("Invalid input file");
+			}
+			process(reader, source, writer, destination);
+		}
+
+		while (segmentIndex < segments.size()) {
+			nextSegment(source);
+		}
+
+		try {
+			writer.flush();
+			metrics.lap(RunMetrics.Phase.SAVE);
+		} catch (IOException e) {
+			logger.error("Failed to save new texts to '{}'", destination, e);
+			throw new ProcessingException("Invalid contents or output file");
+		}
+
+		if (read == 0) {
+			logger.info("File empty");
+		} else {
+			logger.info("Found {} elements", read);
+		}
+		if (options.durationIncrement() > 0) {
+			logger.info("Display time extended by {} milliseconds", options.durationIncrement());
+		}
+		if (remap.remaps()) {
+			logger.info("Display times remapped: {}", remap);
+		}
+		if (options.shiftStart() != 0) {
+			logger.info("Display start time shifted by {} milliseconds", options.shiftStart());
+		}
+		if (!segments.isEmpty()) {
+			logger.info("New text list ready, {} texts dropped, display time reduced for {} (start) and {} (end)", read - writer.count(),
+					metrics.count(RunMetrics.Counter.START_TRUNCATED), metrics.count(RunMetrics.Counter.END_TRUNCATED));
+		}
+		logger.info("Wrote {} elements in '{}'", writer.count(), destination);
+	}
+
+	/**
+	 * Makes sure the text read is after the previous one, without overlap.
+	 */
+	private void checkRead() throws UnsortedException {
+		long start = cue.start(0);
+		long end = cue.end(0);
+		if (read > 0 && start <= previousEnd) {
+			if (start < previousStart || (start == previousStart && end < previousEnd)) {
+				throw new UnsortedException("Text #" + cue.count(0) + " before the previous one");
+			}
+			throw new IllegalArgumentException("Text #" + previousCount + " overlap with next one");
+		}
+	}
+
+	private void process(CueReader reader, Object source, SrtWriter writer, Object destination) throws ProcessingException {
+		int count = cue.count(0);
+		long start = cue.start(0);
+		long end = cue.end(0);
+
+		if (options.durationIncrement() > 0) {
+			// Update subtitle display length
+			end += options.durationIncrement();
+			if (read > 0 && start <= previousEnd + options.durationIncrement()) {
+				logger.error("Failed to extend subtitles of '{}': text #{} overlap with next one", source, previousCount);
+				throw new ProcessingException("Duration increment too large");
+			}
+			metrics.lap(RunMetrics.Phase.EXTEND);
+		}
+
+		if (remap.remaps()) {
+			// Update subtitle start/end times, before the shift
+			start = remap.remap(start);
+			end = remap.remap(end);
+			if (start < 0 || (read > 0 && start <= previousRemappedEnd)) {
+				if (start < 0) {
+					logger.error("Failed to remap subtitles of '{}': text #{} starts before 00:00:00,000", source, count);
+				} else {
+					logger.error("Failed to remap subtitles of '{}': text #{} overlap with next one", source, previousCount);
+				}
+				throw new ProcessingException("Remapping subtitles failed");
+			}
+			previousRemappedEnd = end;
+			metrics.lap(RunMetrics.Phase.RETIME);
+		}
+
+		previousCount = count;
+		previousStart = cue.start(0);
+		previousEnd = cue.end(0);
+		read++;
+
+		if (options.shiftStart() != 0) {
+			// Update subtitle start/end times
+			start += options.shiftStart();
+			end += options.shiftStart();
+			if (start < 0) {
+				logger.error("Failed to shift subtitles of '{}': text #{} starts before 00:00:00,000", source, count);
+				throw new ProcessingException("Shifting subtitles failed");
+			}
+			metrics.lap(RunMetrics.Phase.SHIFT);
+		}
+
+		if (segments.isEmpty()) {
+			write(start, end, reader, writer, destination);
+			return;
+		}
+
+		// Skip the segments before the text
+		while (segmentIndex < segments.size() && start > segments.get(segmentIndex).end()) {
+			nextSegment(source);
+		}
+		if (segmentIndex == segments.size() || end < segments.get(segmentIndex).start()) {
+			// Not in a segment, dropped
+			metrics.increment(RunMetrics.Counter.DROPPED);
+			metrics.lap(RunMetrics.Phase.EXTRACT);
+			return;
+		}
+
+		// Get new start/end times
+		var segment = segments.get(segmentIndex);
+		var event = segmentEvent();
+		event.texts++;
+		long nextDelta = delta + segment.duration();
+		long newStart = delta;
+		long duration = end - start;
+		if (segment.start() < start) {
+			newStart += start - segment.start();
+		} else {
+			// Display time reduced
+			metrics.increment(RunMetrics.Counter.START_TRUNCATED);
+			event.startTruncated++;
+			duration -= segment.start() - start;
+		}
+
+		long newEnd;
+		if (end < segment.end()) {
+			newEnd = newStart + duration;
+		} else {
+			// Display time reduced
+			newEnd = nextDelta;
+			metrics.increment(RunMetrics.Counter.END_TRUNCATED);
+			event.endTruncated++;
+		}
+		metrics.lap(RunMetrics.Phase.EXTRACT);
+		write(newStart, newEnd, reader, writer, destination);
+	}
+
+	/**
+	 * @return the event of the current segment, begun with its first text.
+	 */
+	private SrtEvents.ExtractSegment segmentEvent() {
+		if (segmentEvent == null) {
+			segmentEvent = new SrtEvents.ExtractSegment();
+			segmentEvent.begin();
+		}
+		return segmentEvent;
+	}
+
+	/**
+	 * Ends the current segment.
+	 */
+	private void nextSegment(Object source) {
+		var segment = segments.get(segmentIndex);
+		var event = segmentEvent();
+		if (event.shouldCommit()) {
+			event.file = String.valueOf(source);
+			event.segmentStart = segment.start();
+			event.segmentEnd = segment.end();
+			event.commit();
+		}
+		segmentEvent = null;
+		delta += segment.duration();
+		segmentIndex++;
+	}
+
+	/**
+	 * Writes the current text, its lines being copied from the source when
+	 * the reader kept them there.
+	 */
+	private void write(long start, long end, CueReader reader, SrtWriter writer, Object destination) throws ProcessingException {
+		try {
+			if (writer.count() > 0 && start <= previousOutputEnd) {
+				throw new IllegalArgumentException("Text #" + writer.count() + " overlap with next one");
+			}
+			var rawText = reader.rawText();
+			if (rawText != null) {
+				writer.write(start, end, rawText);
+			} else {
+				writer.write(start, end, cue.lines(), cue.firstLine(0), cue.lineCount(0));
+			}
+			previousOutputEnd = end;
+			metrics.increment(RunMetrics.Counter.WRITTEN);
+			metrics.lap(RunMetrics.Phase.SAVE);
+		} catch (IOException | IllegalArgumentException e) {
+			logger.error("Failed to save new texts to '{}'", destination, e);
+			throw new ProcessingException("Invalid contents or output file");
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streaming reader of SRT contents: texts are read one at a time, so memory
+ * usage depends on the largest text, not on the file size. Contents are decoded
+ * once with the charset detected from their first bytes, see
+ * {@link SrtCharset}; invalid contents fail with a
+ * {@link java.nio.charset.CharacterCodingException}.
+ */
+final class SrtReader implements CueReader {
+	private static final Logger logger = LoggerFactory.getLogger(SrtReader.class);
+
+	private final BufferedReader reader;
+
+	// Index of the last line read, -1 before the first one
+	private int line = -1;
+	private boolean blank = false;
+	// Count of texts read so far
+	private int count = 0;
+
+	/**
+	 * Reads <code>channel</code> decoded with <code>charset</code>, from its
+	 * current position: a byte order mark has to be skipped already.
+	 */
+	SrtReader(ReadableByteChannel channel, Charset charset) {
+		this(new Decoder(channel, ByteBuffer.allocate(SrtCharset.SAMPLE_SIZE).flip(), charset, null));
+	}
+
+	private SrtReader(Reader reader) {
+		this.reader = new BufferedReader(reader);
+	}
+
+	static SrtReader open(Path file) throws IOException {
+		return open(file, SrtCharset.DEFAULT_FALLBACK);
+	}
+
+	/**
+	 * @param fallback charset of the contents neither UTF-8 nor UTF-16.
+	 */
+	static SrtReader open(Path file, Charset fallback) throws IOException {
+		return open(FileChannel.open(file, READ), fallback);
+	}
+
+	/**
+	 * Reads up to {@link SrtCharset#SAMPLE_SIZE} bytes of <code>channel</code> to
+	 * detect their charset, then decodes them followed by the rest of the
+	 * channel. Contents detected as UTF-8 from the sample only are decoded with
+	 * <code>fallback</code> from the first invalid UTF-8 sequence after it, as
+	 * long as all the characters before were ASCII, decoded the same way.
+	 *
+	 * @param fallback charset of the contents neither UTF-8 nor UTF-16.
+	 */
+	static SrtReader open(ReadableByteChannel channel, Charset fallback) throws IOException {
+		var sample = ByteBuffer.allocate(SrtCharset.SAMPLE_SIZE);
+		boolean partial = true;
+		while (sample.hasRemaining()) {
+			if (channel.read(sample) < 0) {
+				partial = false;
+				break;
+			}
+		}
+		var detection = SrtCharset.detect(sample, sample.position(), partial, fallback);
+		sample.flip().position(detection.bomLength());
+		boolean sampled = partial && detection.bomLength() == 0 && detection.charset().equals(StandardCharsets.UTF_8);
+		return new SrtReader(new Decoder(channel, sample, detection.charset(), sampled ? fallback : null));
+	}
+
+	private static CharsetDecoder decoder(Charset charset) {
+		return charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+	}
+
+	/**
+	 * Decoder of the contents of a channel, switching to the fallback charset on
+	 * the first invalid sequence if only ASCII characters were decoded so far.
+	 */
+	private static final class Decoder extends Reader {
+		private final ReadableByteChannel channel;
+		// Bytes read but not decoded yet, in read mode
+		private final ByteBuffer bytes;
+		private CharsetDecoder decoder;
+		// Charset to switch to, null once switched or if not allowed
+		@Nullable
+		private Charset fallback;
+		private boolean ascii = true;
+		private boolean endOfInput = false;
+		private boolean flushed = false;
+
+		Decoder(ReadableByteChannel channel, ByteBuffer bytes, Charset charset, @Nullable Charset fallback) {
+			this.channel = channel;
+			this.bytes = bytes;
+			this.decoder = decoder(charset);
+			this.fallback = fallback;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			if (flushed) {
+				return -1;
+			}
+			if (length == 0) {
+				return 0;
+			}
+			var chars = CharBuffer.wrap(buffer, offset, length);
+			while (true) {
+				var result = decoder.decode(bytes, chars, endOfInput);
+				if (result.isError()) {
+					checkAscii(buffer, offset, chars.position());
+					if (fallback == null || !ascii) {
+						result.throwException();
+					}
+					logger.warn("Invalid {} contents after the first {} bytes, decoded as {}", decoder.charset(), SrtCharset.SAMPLE_SIZE, fallback);
+					decoder = decoder(fallback);
+					fallback = null;
+					continue;
+				}
+				if (chars.position() > offset) {
+					break;
+				}
+				if (endOfInput) {
+					decoder.flush(chars);
+					flushed = true;
+					break;
+				}
+				bytes.compact();
+				endOfInput = channel.read(bytes) < 0;
+				bytes.flip();
+			}
+			int read = chars.position() - offset;
+			if (read == 0) {
+				return -1;
+			}
+			checkAscii(buffer, offset, chars.position());
+			return read;
+		}
+
+		private void checkAscii(char[] buffer, int from, int to) {
+			for (int i = from; ascii && fallback != null && i < to; i++) {
+				ascii = buffer[i] < 0x80;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	@Override
+	public int line() {
+		return line;
+	}
+
+	/**
+	 * Reads the next line.
+	 *
+	 * @return the line or <code>null</code> at the end of the file.
+	 */
+	@Nullable
+	String nextLine() throws IOException {
+		var text = reader.readLine();
+		if (text == null) {
+			return null;
+		}
+		line++;
+		blank = text.isBlank();
+		return text;
+	}
+
+	/**
+	 * Reads the next text: counter, time interval and lines up to an empty one.
+	 *
+	 * @param verifyCount verify text counter is incremented by one.
+	 * @return the text or <code>null</code> at the end of the file.
+	 */
+	@Nullable
+	SrtText nextText(boolean verifyCount) throws IOException {
+		var timeInterval = nextHeader(verifyCount);
+		if (timeInterval == null) {
+			return null;
+		}
+
+		var subtitle = new ArrayList<String>();
+		String text;
+		while ((text = nextTextLine(subtitle.isEmpty())) != null) {
+			subtitle.add(text);
+		}
+
+		return new SrtText(count, readTimeValue(subtitle.size(), timeInterval), subtitle);
+	}
+
+	@Override
+	public boolean nextText(CueTable cues, boolean verifyCount) throws IOException {
+		var timeInterval = nextHeader(verifyCount);
+		if (timeInterval == null) {
+			return false;
+		}
+
+		var lines = cues.lines();
+		int firstLine = lines.size();
+		String text;
+		while ((text = nextTextLine(lines.size() == firstLine)) != null) {
+			lines.add(text);
+		}
+
+		int lineCount = lines.size() - firstLine;
+		var value = readTimeValue(lineCount, timeInterval);
+		cues.add(count, value.start(), value.end(), firstLine, lineCount);
+		return true;
+	}
+
+	@Override
+	public void skipText() throws IOException {
+		if (line >= 0 && blank) {
+			return;
+		}
+		String text;
+		do {
+			text = nextLine();
+		} while (text != null && !text.isBlank());
+	}
+
+	/**
+	 * Reads the counter and the time interval of the next text.
+	 *
+	 * @return the time interval line or <code>null</code> at the end of the file.
+	 */
+	@Nullable
+	private String nextHeader(boolean verifyCount) throws IOException {
+		var counter = nextLine();
+		if (counter == null) {
+			return null;
+		}
+		int nextId = Integer.valueOf(counter);
+		if (verifyCount && nextId != (count + 1)) {
+			// Following texts are verified against this one
+			count = nextId;
+			throw new IllegalArgumentException("Line #" + line + ": unexpected index=" + nextId);
+		}
+		count++;
+
+		var timeInterval = nextLine();
+		if (timeInterval == null) {
+			throw new IllegalArgumentException("Line #" + line + ": unexpected file line count");
+		}
+		return timeInterval;
+	}
+
+	/**
+	 * @return the next line of the current text or <code>null</code> when the
+	 *         empty line ending the text is read.
+	 */
+	@Nullable
+	private String nextTextLine(boolean first) throws IOException {
+		var text = nextLine();
+		if (text == null) {
+			if (first) {
+				throw new IllegalArgumentException("Line #" + line + ": unexpected file line count");
+			}
+			throw new IllegalArgumentException("Line #" + line + ": unexpected end of file");
+		}
+		return text.isBlank() ? null : text;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private SrtTime.Value readTimeValue(int lineCount, String timeInterval) {
+		if (lineCount == 0) {
+			throw new IllegalArgumentException("Line #" + line + ": no text found");
+		}
+		try {
+			return SrtTime.readSrtTimeValue(line, timeInterval);
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Line #" + line + ": unexpected time interval: " + timeInterval, e);
+		}
+	}
+}
@@ -1,13 +1,23 @@
 package com.github.llbrt.subtext;
 
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
 import java.util.Comparator;
 
 final class SrtTime {
 
 	private static final String TIME_SERARATOR = " --> ";
+	private static final byte[] TIME_SERARATOR_BYTES = TIME_SERARATOR.getBytes(StandardCharsets.US_ASCII);
+	static final int SEPARATOR_LENGTH = TIME_SERARATOR.length();
+
+	// Expected format: hours:minutes:seconds,milliseconds; hours may have more than 2 digits
+	private static final int MIN_TIME_LENGTH = "HH:mm:ss,SSS".length();
+	private static final int MAX_HOURS_DIGITS = 9;
+
+	private static final long MILLIS_PER_SECOND = 1000;
+	private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+	private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
 
 	static final Comparator<SrtTime.Value> COMPARATOR = new Comparator<SrtTime.Value>() {
 
@@ -17,48 +27,261 @@ final class SrtTime {
 		}
 	};
 
-	static record Value(LocalTime start, LocalTime end) implements Comparable<SrtTime.Value> {
+	/**
+	 * Time interval, start and end in milliseconds.
+	 */
+	static record Value(long start, long end) implements Comparable<SrtTime.Value> {
+
+		Value {
+			if (start < 0) {
+				throw new IllegalArgumentException("Negative start time: " + start);
+			}
+		}
 
 		Value extend(int milliseconds) {
-			return new Value(start, end.plus(milliseconds, ChronoUnit.MILLIS));
+			return new Value(start, end + milliseconds);
 		}
 
 		Value shift(int milliseconds) {
-			return new Value(start.plus(milliseconds, ChronoUnit.MILLIS), end.plus(milliseconds, ChronoUnit.MILLIS));
+			return new Value(start + milliseconds, end + milliseconds);
+		}
+
+		long duration() {
+			return end - start;
 		}
 
 		boolean overlap(Value other) {
-			return !(end.isBefore(other.start) || other.end.isBefore(start));
+			return !(end < other.start || other.end < start);
 		}
 
 		@Override
 		public int compareTo(SrtTime.Value o) {
-			int startCompare = start.compareTo(o.start);
+			int startCompare = Long.compare(start, o.start);
 			if (startCompare == 0) {
-				return end.compareTo(o.end);
+				return Long.compare(end, o.end);
 			}
 			return startCompare;
 		}
 
 		@Override
 		public String toString() {
-			return FORMATTER.format(start) + TIME_SERARATOR + FORMATTER.format(end);
+			var builder = new StringBuilder(2 * MIN_TIME_LENGTH + TIME_SERARATOR.length());
+			formatMillis(start, builder);
+			builder.append(TIME_SERARATOR);
+			formatMillis(end, builder);
+			return builder.toString();
 		}
 	};
 
-	// Expected format: hours:minutes:seconds,milliseconds
-	private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss,SSS");
-
 	static SrtTime.Value readSrtTimeValue(int line, String timeText) {
-		var times = timeText.split(TIME_SERARATOR);
-		if (times.length != 2) {
+		int separator = timeText.indexOf(TIME_SERARATOR);
+		if (separator < 0 || timeText.indexOf(TIME_SERARATOR, separator + 1) >= 0) {
 			throw new IllegalArgumentException("Line #" + line + ": unexpected timestamp: " + timeText);
 		}
-		var start = LocalTime.parse(times[0], FORMATTER);
-		var end = LocalTime.parse(times[1], FORMATTER);
-		if (end.isBefore(start)) {
+		var start = parseMillis(timeText, 0, separator);
+		var end = parseMillis(timeText, separator + TIME_SERARATOR.length(), timeText.length());
+		if (end < start) {
 			throw new IllegalArgumentException("Line #" + line + ": invalid timestamp: " + timeText + " (end before start)");
 		}
 		return new Value(start, end);
 	}
+
+	/**
+	 * Looks for the separator <code>" --> "</code> between <code>from</code>
+	 * (inclusive) and <code>to</code> (exclusive).
+	 *
+	 * @return index of the separator, -1 if not found or found more than once.
+	 */
+	static int indexOfSeparator(ByteBuffer buffer, int from, int to) {
+		int found = -1;
+		for (int i = from; i <= to - TIME_SERARATOR_BYTES.length; i++) {
+			if (buffer.get(i) == TIME_SERARATOR_BYTES[0] && isSeparatorAt(buffer, i)) {
+				if (found >= 0) {
+					return -1;
+				}
+				found = i;
+			}
+		}
+		return found;
+	}
+
+	private static boolean isSeparatorAt(ByteBuffer buffer, int index) {
+		for (int i = 1; i < TIME_SERARATOR_BYTES.length; i++) {
+			if (buffer.get(index + i) != TIME_SERARATOR_BYTES[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a time <code>HH:mm:ss,SSS</code> located between <code>from</code>
+	 * (inclusive) and <code>to</code> (exclusive).
+	 *
+	 * @return the time in milliseconds.
+	 * @throws DateTimeParseException if the time is not valid.
+	 */
+	static long parseMillis(CharSequence text, int from, int to) {
+		int hoursEnd = to - MIN_TIME_LENGTH + 2;
+		long hours = validHoursLength(from, hoursEnd) ? 0 : -1;
+		for (int i = from; hours >= 0 && i < hoursEnd; i++) {
+			int digit = digit(text.charAt(i));
+			hours = digit < 0 ? -1 : hours * 10 + digit;
+		}
+		if (hours < 0 || text.charAt(hoursEnd) != ':' || text.charAt(hoursEnd + 3) != ':' || text.charAt(hoursEnd + 6) != ',') {
+			throw parseError(text.subSequence(from, Math.max(from, to)));
+		}
+		long millis = toMillis(hours,
+				digits(text.charAt(hoursEnd + 1), text.charAt(hoursEnd + 2)),
+				digits(text.charAt(hoursEnd + 4), text.charAt(hoursEnd + 5)),
+				digits(text.charAt(hoursEnd + 7), text.charAt(hoursEnd + 8), text.charAt(hoursEnd + 9)));
+		if (millis < 0) {
+			throw parseError(text.subSequence(from, to));
+		}
+		return millis;
+	}
+
+	/**
+	 * Parses a time <code>HH:mm:ss,SSS</code> encoded in ASCII between
+	 * <code>from</code> (inclusive) and <code>to</code> (exclusive); the buffer
+	 * position is not modified.
+	 *
+	 * @return the time in milliseconds.
+	 * @throws DateTimeParseException if the time is not valid.
+	 */
+	static long parseMillis(ByteBuffer buffer, int from, int to) {
+		int hoursEnd = to - MIN_TIME_LENGTH + 2;
+		long hours = validHoursLength(from, hoursEnd) ? 0 : -1;
+		for (int i = from; hours >= 0 && i < hoursEnd; i++) {
+			int digit = digit(buffer.get(i));
+			hours = digit < 0 ? -1 : hours * 10 + digit;
+		}
+		if (hours < 0 || buffer.get(hoursEnd) != ':' || buffer.get(hoursEnd + 3) != ':' || buffer.get(hoursEnd + 6) != ',') {
+			throw parseError(Utils.asciiString(buffer, from, Math.max(from, to)));
+		}
+		long millis = toMillis(hours,
+				digits(buffer.get(hoursEnd + 1), buffer.get(hoursEnd + 2)),
+				digits(buffer.get(hoursEnd + 4), buffer.get(hoursEnd + 5)),
+				digits(buffer.get(hoursEnd + 7), buffer.get(hoursEnd + 8), buffer.get(hoursEnd + 9)));
+		if (millis < 0) {
+			throw parseError(Utils.asciiString(buffer, from, to));
+		}
+		return millis;
+	}
+
+	/**
+	 * Appends <code>millis</code> with the format <code>HH:mm:ss,SSS</code>.
+	 */
+	static void formatMillis(long millis, StringBuilder builder) {
+		checkFormattable(millis);
+		long hours = millis / MILLIS_PER_HOUR;
+		if (hours < 10) {
+			builder.append('0');
+		}
+		builder.append(hours);
+		int rest = (int) (millis % MILLIS_PER_HOUR);
+		int minutes = rest / (int) MILLIS_PER_MINUTE;
+		rest %= (int) MILLIS_PER_MINUTE;
+		int seconds = rest / (int) MILLIS_PER_SECOND;
+		rest %= (int) MILLIS_PER_SECOND;
+		builder.append(':')
+				.append((char) ('0' + minutes / 10))
+				.append((char) ('0' + minutes % 10))
+				.append(':')
+				.append((char) ('0' + seconds / 10))
+				.append((char) ('0' + seconds % 10))
+				.append(',')
+				.append((char) ('0' + rest / 100))
+				.append((char) ('0' + (rest / 10) % 10))
+				.append((char) ('0' + rest % 10));
+	}
+
+	/**
+	 * Puts <code>millis</code> in ASCII with the format <code>HH:mm:ss,SSS</code>
+	 * at the current buffer position.
+	 */
+	static void formatMillis(long millis, ByteBuffer buffer) {
+		checkFormattable(millis);
+		long hours = millis / MILLIS_PER_HOUR;
+		if (hours < 10) {
+			buffer.put((byte) '0');
+		}
+		putDigits(hours, buffer);
+		int rest = (int) (millis % MILLIS_PER_HOUR);
+		int minutes = rest / (int) MILLIS_PER_MINUTE;
+		rest %= (int) MILLIS_PER_MINUTE;
+		int seconds = rest / (int) MILLIS_PER_SECOND;
+		rest %= (int) MILLIS_PER_SECOND;
+		buffer.put((byte) ':')
+				.put((byte) ('0' + minutes / 10))
+				.put((byte) ('0' + minutes % 10))
+				.put((byte) ':')
+				.put((byte) ('0' + seconds / 10))
+				.put((byte) ('0' + seconds % 10))
+				.put((byte) ',')
+				.put((byte) ('0' + rest / 100))
+				.put((byte) ('0' + (rest / 10) % 10))
+				.put((byte) ('0' + rest % 10));
+	}
+
+	/**
+	 * Puts the time interval <code>start --> end</code> in ASCII at the current
+	 * buffer position.
+	 */
+	static void formatInterval(long start, long end, ByteBuffer buffer) {
+		formatMillis(start, buffer);
+		buffer.put(TIME_SERARATOR_BYTES);
+		formatMillis(end, buffer);
+	}
+
+	/**
+	 * Puts the decimal representation of a positive <code>value</code> at the
+	 * current buffer position.
+	 */
+	static void putDigits(long value, ByteBuffer buffer) {
+		long divisor = 1;
+		while (divisor <= value / 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			buffer.put((byte) ('0' + (value / divisor) % 10));
+		}
+	}
+
+	private static void checkFormattable(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("Negative time: " + millis);
+		}
+	}
+
+	private static boolean validHoursLength(int from, int hoursEnd) {
+		return hoursEnd - from >= 2 && hoursEnd - from <= MAX_HOURS_DIGITS;
+	}
+
+	private static long toMillis(long hours, int minutes, int seconds, int millis) {
+		if (minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59 || millis < 0) {
+			return -1;
+		}
+		return hours * MILLIS_PER_HOUR + minutes * MILLIS_PER_MINUTE + seconds * MILLIS_PER_SECOND + millis;
+	}
+
+	private static int digits(int c1, int c2) {
+		int d1 = digit(c1);
+		int d2 = digit(c2);
+		return (d1 < 0 || d2 < 0) ? -1 : 10 * d1 + d2;
+	}
+
+	private static int digits(int c1, int c2, int c3) {
+		int d12 = digits(c1, c2);
+		int d3 = digit(c3);
+		return (d12 < 0 || d3 < 0) ? -1 : 10 * d12 + d3;
+	}
+
+	private static int digit(int c) {
+		return (c >= '0' && c <= '9') ? c - '0' : -1;
+	}
+
+	private static DateTimeParseException parseError(CharSequence parsedData) {
+		return new DateTimeParseException("Text '" + parsedData + "' could not be parsed", parsedData, 0);
+	}
 }
@@ -0,0 +1,157 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Encodes texts as SRT directly into a byte buffer flushed to a channel.
+ * Counters are generated, starting from 1.
+ */
+final class SrtWriter implements Closeable {
+	static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(US_ASCII);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// Raw texts written straight to the channel from this size
+	private static final int DIRECT_WRITE_SIZE = 4 * 1024;
+	// Room for a counter and a time interval line
+	private static final int MAX_HEADER_LENGTH = 128;
+
+	private final WritableByteChannel channel;
+	private final boolean flushEachText;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	private int count = 0;
+	private long bytes = 0;
+
+	SrtWriter(WritableByteChannel channel) {
+		this(channel, false);
+	}
+
+	/**
+	 * @param flushEachText write each text to the channel as soon as encoded,
+	 *                      e.g. for a pipe read while texts are processed.
+	 */
+	SrtWriter(WritableByteChannel channel, boolean flushEachText) {
+		this.channel = channel;
+		this.flushEachText = flushEachText;
+	}
+
+	static SrtWriter create(Path file) throws IOException {
+		return new SrtWriter(FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE));
+	}
+
+	/**
+	 * @return count of texts written.
+	 */
+	int count() {
+		return count;
+	}
+
+	/**
+	 * @return count of bytes flushed to the channel.
+	 */
+	long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * Writes the text at <code>index</code> of <code>cues</code>.
+	 */
+	void write(CueTable cues, int index) throws IOException {
+		write(cues.start(index), cues.end(index), cues.lines(), cues.firstLine(index), cues.lineCount(index));
+	}
+
+	void write(long start, long end, TextLines lines, int firstLine, int lineCount) throws IOException {
+		putHeader(start, end);
+		var data = lines.data();
+		for (int line = firstLine; line < firstLine + lineCount; line++) {
+			put(data, lines.start(line), lines.end(line) - lines.start(line));
+			put(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+		}
+		endText();
+	}
+
+	/**
+	 * Writes a text whose lines are kept as in the source, e.g. a slice of a
+	 * mapped file: large ones are written straight to the channel, without
+	 * being copied to the buffer.
+	 *
+	 * @param text lines separated by {@link #LINE_SEPARATOR}.
+	 */
+	void write(long start, long end, ByteBuffer text) throws IOException {
+		putHeader(start, end);
+		if (text.remaining() >= DIRECT_WRITE_SIZE || text.remaining() > buffer.remaining()) {
+			flush();
+			var direct = text.duplicate();
+			bytes += direct.remaining();
+			while (direct.hasRemaining()) {
+				channel.write(direct);
+			}
+		} else {
+			buffer.put(text.duplicate());
+		}
+		put(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+		endText();
+	}
+
+	private void putHeader(long start, long end) throws IOException {
+		if (buffer.remaining() < MAX_HEADER_LENGTH) {
+			flush();
+		}
+		count++;
+		SrtTime.putDigits(count, buffer);
+		buffer.put(LINE_SEPARATOR);
+		SrtTime.formatInterval(start, end, buffer);
+		buffer.put(LINE_SEPARATOR);
+	}
+
+	private void endText() throws IOException {
+		put(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+		if (flushEachText) {
+			flush();
+		}
+	}
+
+	void flush() throws IOException {
+		buffer.flip();
+		bytes += buffer.remaining();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void put(byte[] data, int offset, int length) throws IOException {
+		if (length > buffer.remaining()) {
+			flush();
+			if (length > buffer.remaining()) {
+				// Too large for the buffer
+				var wrapped = ByteBuffer.wrap(data, offset, length);
+				bytes += length;
+				while (wrapped.hasRemaining()) {
+					channel.write(wrapped);
+				}
+				return;
+			}
+		}
+		buffer.put(data, offset, length);
+	}
+}
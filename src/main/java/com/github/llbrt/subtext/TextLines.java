@@ -0,0 +1,221 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Text lines stored as UTF-8 in a single buffer, each line being identified by
+ * its index. Shared by the cue tables built from the same file.
+ * <p>
+ * Repeated lines (music notes, speaker tags, "[laughs]"...) are stored once:
+ * each line index refers to the handle of a distinct line, found through an
+ * open addressing hash table.
+ */
+final class TextLines {
+	private static final int INITIAL_LINES = 64;
+	private static final int EMPTY = -1;
+
+	private byte[] data = new byte[INITIAL_LINES * 32];
+	private int length = 0;
+
+	// Distinct line h is located between offsets[h] (inclusive) and offsets[h + 1] (exclusive)
+	private int[] offsets = new int[INITIAL_LINES + 1];
+	private int[] hashes = new int[INITIAL_LINES];
+	private int distinct = 0;
+
+	// Handle of the distinct line of each line
+	private int[] handles = new int[INITIAL_LINES];
+	private int count = 0;
+
+	// Handles of the distinct lines by hash, at most half full
+	private int[] table = newTable(2 * INITIAL_LINES);
+
+	/**
+	 * @return index of the added line.
+	 */
+	int add(String line) {
+		return add(line.getBytes(UTF_8));
+	}
+
+	/**
+	 * @param line UTF-8 encoded line, without line terminator.
+	 * @return index of the added line.
+	 */
+	int add(byte[] line) {
+		ensureCapacity(line.length);
+		System.arraycopy(line, 0, data, length, line.length);
+		return endLine(line.length);
+	}
+
+	/**
+	 * Adds the UTF-8 encoded line located between <code>from</code> (inclusive)
+	 * and <code>to</code> (exclusive) of <code>buffer</code>.
+	 *
+	 * @return index of the added line.
+	 */
+	int add(ByteBuffer buffer, int from, int to) {
+		ensureCapacity(to - from);
+		buffer.get(from, data, length, to - from);
+		return endLine(to - from);
+	}
+
+	private void ensureCapacity(int lineLength) {
+		if (length + lineLength > data.length) {
+			data = Arrays.copyOf(data, Math.max(2 * data.length, length + lineLength));
+		}
+		if (distinct == hashes.length) {
+			hashes = Arrays.copyOf(hashes, 2 * distinct);
+			offsets = Arrays.copyOf(offsets, 2 * distinct + 1);
+		}
+		if (count == handles.length) {
+			handles = Arrays.copyOf(handles, 2 * handles.length);
+		}
+	}
+
+	/**
+	 * Ends the line copied after the last distinct one: kept as a new distinct
+	 * line, or dropped if an identical one is already stored.
+	 */
+	private int endLine(int lineLength) {
+		handles[count] = intern(lineLength, hash(data, length, length + lineLength));
+		return count++;
+	}
+
+	/**
+	 * Appends all the lines of <code>other</code>, its distinct lines being
+	 * stored once without computing their hash again.
+	 *
+	 * @return index of the first line appended, the others following in order.
+	 */
+	int addAll(TextLines other) {
+		var mapping = new int[other.distinct];
+		for (int handle = 0; handle < other.distinct; handle++) {
+			int from = other.offsets[handle];
+			int lineLength = other.offsets[handle + 1] - from;
+			ensureCapacity(lineLength);
+			System.arraycopy(other.data, from, data, length, lineLength);
+			mapping[handle] = intern(lineLength, other.hashes[handle]);
+		}
+		int first = count;
+		if (count + other.count > handles.length) {
+			handles = Arrays.copyOf(handles, Math.max(2 * handles.length, count + other.count));
+		}
+		for (int i = 0; i < other.count; i++) {
+			handles[count++] = mapping[other.handles[i]];
+		}
+		return first;
+	}
+
+	/**
+	 * @return the handle of the line copied after the last distinct one, added
+	 *         as a new distinct line if not found.
+	 */
+	private int intern(int lineLength, int hash) {
+		int mask = table.length - 1;
+		int slot = hash & mask;
+		int handle;
+		while ((handle = table[slot]) != EMPTY) {
+			if (hashes[handle] == hash && Arrays.equals(data, offsets[handle], offsets[handle + 1], data, length, length + lineLength)) {
+				return handle;
+			}
+			slot = (slot + 1) & mask;
+		}
+		handle = distinct++;
+		length += lineLength;
+		offsets[distinct] = length;
+		hashes[handle] = hash;
+		table[slot] = handle;
+		if (2 * distinct > table.length) {
+			rehash();
+		}
+		return handle;
+	}
+
+	private void rehash() {
+		table = newTable(2 * table.length);
+		int mask = table.length - 1;
+		for (int handle = 0; handle < distinct; handle++) {
+			int slot = hashes[handle] & mask;
+			while (table[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = handle;
+		}
+	}
+
+	private static int[] newTable(int size) {
+		var table = new int[size];
+		Arrays.fill(table, EMPTY);
+		return table;
+	}
+
+	private static int hash(byte[] bytes, int from, int to) {
+		int hash = 1;
+		for (int i = from; i < to; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		// Spread the high bits to the slots
+		return hash ^ (hash >>> 16);
+	}
+
+	int size() {
+		return count;
+	}
+
+	/**
+	 * @return the count of distinct lines stored.
+	 */
+	int distinctSize() {
+		return distinct;
+	}
+
+	/**
+	 * Removes all the lines, keeping the allocated buffers.
+	 */
+	void clear() {
+		if (distinct > 0) {
+			Arrays.fill(table, EMPTY);
+		}
+		length = 0;
+		distinct = 0;
+		count = 0;
+	}
+
+	/**
+	 * Removes the lines from <code>size</code> to the end, such as the lines of
+	 * a text found invalid once added. Their distinct lines are kept, reused if
+	 * added again.
+	 */
+	void truncate(int size) {
+		count = Math.min(count, size);
+	}
+
+	/**
+	 * @return the buffer containing the lines; only valid until the next addition.
+	 */
+	byte[] data() {
+		return data;
+	}
+
+	/**
+	 * @return the handle of the distinct line of the line at <code>index</code>:
+	 *         identical lines have the same handle.
+	 */
+	int handle(int index) {
+		return handles[index];
+	}
+
+	int start(int index) {
+		return offsets[handles[index]];
+	}
+
+	int end(int index) {
+		return offsets[handles[index] + 1];
+	}
+
+	String line(int index) {
+		return new String(data, start(index), end(index) - start(index), UTF_8);
+	}
+}
@@ -0,0 +1,156 @@
+package com.github.llbrt.subtext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Anchor points mapping source times to target times, to correct subtitles
+ * drifting from the video: times between two anchors are interpolated
+ * linearly, times before the first anchor (after the last one) keep its
+ * offset. Immutable, shared by the jobs running concurrently.
+ */
+final class TimeAnchors {
+	private static final Logger logger = LoggerFactory.getLogger(TimeAnchors.class);
+
+	private static final String SEPARATOR = " --> ";
+
+	// Sorted, both strictly increasing
+	private final long[] sources;
+	private final long[] targets;
+	// Slope of the interval starting at each anchor
+	private final double[] slopes;
+
+	TimeAnchors(long[] sources, long[] targets) {
+		if (sources.length == 0 || sources.length != targets.length) {
+			throw new IllegalArgumentException("No anchor");
+		}
+		this.sources = sources.clone();
+		this.targets = targets.clone();
+		this.slopes = new double[sources.length];
+		for (int i = 1; i < sources.length; i++) {
+			if (sources[i] <= sources[i - 1] || targets[i] <= targets[i - 1]) {
+				throw new IllegalArgumentException("Anchor #" + (i + 1) + " not after the previous one");
+			}
+			slopes[i - 1] = (double) (targets[i] - targets[i - 1]) / (sources[i] - sources[i - 1]);
+		}
+	}
+
+	/**
+	 * Loads the anchors of <code>file</code>: one <code>source --> target</code>
+	 * per line, same time format as SRT files, in any order.
+	 */
+	static TimeAnchors load(Path file) throws IOException {
+		var sources = new long[16];
+		var targets = new long[16];
+		int size = 0;
+		try (var reader = SrtReader.open(file)) {
+			String anchor;
+			while ((anchor = reader.nextLine()) != null) {
+				if (anchor.isBlank()) {
+					continue;
+				}
+				int separator = anchor.indexOf(SEPARATOR);
+				if (separator < 0) {
+					throw new IllegalArgumentException("Line #" + reader.line() + ": unexpected anchor: " + anchor);
+				}
+				if (size == sources.length) {
+					sources = Arrays.copyOf(sources, 2 * size);
+					targets = Arrays.copyOf(targets, 2 * size);
+				}
+				try {
+					sources[size] = SrtTime.parseMillis(anchor, 0, separator);
+					targets[size] = SrtTime.parseMillis(anchor, separator + SEPARATOR.length(), anchor.length());
+				} catch (DateTimeParseException e) {
+					throw new IllegalArgumentException("Line #" + reader.line() + ": unexpected anchor: " + anchor, e);
+				}
+				size++;
+			}
+		}
+		sort(sources, targets, size);
+		var anchors = new TimeAnchors(Arrays.copyOf(sources, size), Arrays.copyOf(targets, size));
+		logger.info("Found {} anchor(s)", size);
+		return anchors;
+	}
+
+	/**
+	 * Sorts the anchors by source time, usually already sorted.
+	 */
+	private static void sort(long[] sources, long[] targets, int size) {
+		for (int i = 1; i < size; i++) {
+			if (sources[i] < sources[i - 1]) {
+				var order = new Integer[size];
+				for (int j = 0; j < size; j++) {
+					order[j] = j;
+				}
+				Arrays.sort(order, (i1, i2) -> Long.compare(sources[i1], sources[i2]));
+				var sortedSources = new long[size];
+				var sortedTargets = new long[size];
+				for (int j = 0; j < size; j++) {
+					sortedSources[j] = sources[order[j]];
+					sortedTargets[j] = targets[order[j]];
+				}
+				System.arraycopy(sortedSources, 0, sources, 0, size);
+				System.arraycopy(sortedTargets, 0, targets, 0, size);
+				return;
+			}
+		}
+	}
+
+	int size() {
+		return sources.length;
+	}
+
+	/**
+	 * @return <code>time</code> mapped to the target times.
+	 */
+	long map(long time) {
+		return map(time, interval(time));
+	}
+
+	/**
+	 * @return the index of the last anchor at or before <code>time</code>, -1 if
+	 *         none; found by binary search.
+	 */
+	int interval(long time) {
+		int index = Arrays.binarySearch(sources, time);
+		return index >= 0 ? index : -index - 2;
+	}
+
+	/**
+	 * Same as {@link #interval(long)}, walking forward from the interval of the
+	 * previous time: linear over increasing times (merged sweep).
+	 *
+	 * @param from interval of the previous time.
+	 */
+	int interval(long time, int from) {
+		if (from >= 0 && time < sources[from]) {
+			// Not increasing
+			return interval(time);
+		}
+		int index = from;
+		while (index + 1 < sources.length && sources[index + 1] <= time) {
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * @param interval the interval of <code>time</code>, see
+	 *                 {@link #interval(long)}.
+	 * @return <code>time</code> mapped to the target times.
+	 */
+	long map(long time, int interval) {
+		if (interval < 0) {
+			return time + targets[0] - sources[0];
+		}
+		if (interval == sources.length - 1) {
+			return time + targets[interval] - sources[interval];
+		}
+		return targets[interval] + Math.round((time - sources[interval]) * slopes[interval]);
+	}
+}
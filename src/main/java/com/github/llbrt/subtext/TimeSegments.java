@@ -1,9 +1,6 @@
 package com.github.llbrt.subtext;
 
-import static java.util.Collections.unmodifiableList;
-
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
@@ -18,45 +15,52 @@ final class TimeSegments {
 	private static final Logger logger = LoggerFactory.getLogger(TimeSegments.class);
 
 	private final @Nullable Path file;
-	private final List<SrtTime.Value> segments = new ArrayList<>();
+	// Immutable once loaded, shared by the jobs running concurrently
+	private List<SrtTime.Value> segments = List.of();
 
 	TimeSegments(@Nullable Path file) {
 		this.file = file;
 	}
 
+	@Nullable
+	Path file() {
+		return file;
+	}
+
 	List<SrtTime.Value> segments() {
-		return unmodifiableList(segments);
+		return segments;
 	}
 
 	void load() throws IOException {
-		segments.clear();
+		this.segments = List.of();
 		if (file == null) {
 			// Nothing to do
 			return;
 		}
 
-		var fileLines = Files.readAllLines(file);
-		if (fileLines.isEmpty()) {
+		var segments = new ArrayList<SrtTime.Value>();
+		try (var reader = SrtReader.open(file)) {
+			String timeSegment;
+			while ((timeSegment = reader.nextLine()) != null) {
+				try {
+					segments.add(SrtTime.readSrtTimeValue(reader.line(), timeSegment));
+				} catch (DateTimeParseException e) {
+					throw new IllegalArgumentException("Line #" + reader.line() + ": unexpected time interval: " + timeSegment, e);
+				}
+			}
+		}
+		if (segments.isEmpty()) {
 			// Nothing to do
 			return;
 		}
 
-		fileLines = Utils.sanitize(fileLines);
-
-		for (int i = 0; i < fileLines.size(); i++) {
-			var timeSegment = fileLines.get(i);
-			try {
-				segments.add(SrtTime.readSrtTimeValue(i, timeSegment));
-			} catch (DateTimeParseException e) {
-				throw new IllegalArgumentException("Line #" + i + ": unexpected time interval: " + timeSegment, e);
-			}
-		}
-		checkLoadedSegments();
+		checkLoadedSegments(segments);
+		this.segments = List.copyOf(segments);
 
 		logger.info("Found {} time segment(s)", segments.size());
 	}
 
-	private void checkLoadedSegments() {
+	private static void checkLoadedSegments(List<SrtTime.Value> segments) {
 
 		// Make sure segments are sorted and don't overlap
 		segments.sort(SrtTime.COMPARATOR);
@@ -0,0 +1,160 @@
+package com.github.llbrt.subtext;
+
+import javax.annotation.Nullable;
+
+/**
+ * Remap of the display times, applied to whole arrays of times in a single
+ * sweep: each text is extended by <code>extend</code> milliseconds, then its
+ * times are mapped by the anchors (drift correction), multiplied by
+ * <code>scale</code> (frame rate conversion) and shifted by <code>shift</code>
+ * milliseconds, that is <code>t' = round(scale * anchors(t)) + shift</code>.
+ */
+final class TimeTransform {
+
+	private final int extend;
+	private final double scale;
+	private final long shift;
+	private final @Nullable TimeAnchors anchors;
+
+	TimeTransform(int extend, double scale, long shift) {
+		this(extend, scale, shift, null);
+	}
+
+	TimeTransform(int extend, double scale, long shift, @Nullable TimeAnchors anchors) {
+		if (!(scale > 0) || Double.isInfinite(scale)) {
+			throw new IllegalArgumentException("Invalid scale: " + scale);
+		}
+		this.extend = extend;
+		this.scale = scale;
+		this.shift = shift;
+		this.anchors = anchors;
+	}
+
+	static TimeTransform of(ProcessingOptions options) {
+		return of(options, null);
+	}
+
+	static TimeTransform of(ProcessingOptions options, @Nullable TimeAnchors anchors) {
+		// Display times are only extended
+		return new TimeTransform(Math.max(0, options.durationIncrement()), options.scale(), options.shiftStart(), anchors);
+	}
+
+	int extend() {
+		return extend;
+	}
+
+	double scale() {
+		return scale;
+	}
+
+	long shift() {
+		return shift;
+	}
+
+	@Nullable
+	TimeAnchors anchors() {
+		return anchors;
+	}
+
+	boolean isIdentity() {
+		return extend == 0 && shift == 0 && !remaps();
+	}
+
+	/**
+	 * @return whether times are mapped by anchors or scaled.
+	 */
+	boolean remaps() {
+		return scale != 1 || anchors != null;
+	}
+
+	/**
+	 * @return the same remap, without extension nor shift.
+	 */
+	TimeTransform remapOnly() {
+		return new TimeTransform(0, scale, 0, anchors);
+	}
+
+	/**
+	 * @return <code>time</code> mapped by the anchors and multiplied by the
+	 *         scale, rounded to the millisecond.
+	 */
+	long remap(long time) {
+		long mapped = anchors == null ? time : anchors.map(time);
+		return scale == 1 ? mapped : Math.round(scale * mapped);
+	}
+
+	long start(long start) {
+		return remap(start) + shift;
+	}
+
+	long end(long end) {
+		return remap(end + extend) + shift;
+	}
+
+	/**
+	 * Remaps the sorted texts from 0 (inclusive) to <code>size</code>
+	 * (exclusive), checking in the same sweep that each one still starts at or
+	 * after 00:00:00,000 and after the end of the previous one.
+	 *
+	 * @return index of the first invalid text, not remapped as the ones after it;
+	 *         -1 if all the texts are valid.
+	 */
+	int apply(long[] starts, long[] ends, int size) {
+		// -1 so that negative starts are caught by the overlap check
+		long previousEnd = -1;
+		if (anchors != null) {
+			// Merged sweep over the anchors, starts and ends being sorted
+			int startInterval = -1;
+			int endInterval = -1;
+			for (int i = 0; i < size; i++) {
+				startInterval = anchors.interval(starts[i], startInterval);
+				endInterval = anchors.interval(ends[i] + extend, endInterval);
+				long start = anchors.map(starts[i], startInterval);
+				long end = anchors.map(ends[i] + extend, endInterval);
+				if (scale != 1) {
+					start = Math.round(scale * start);
+					end = Math.round(scale * end);
+				}
+				start += shift;
+				end += shift;
+				if (start <= previousEnd) {
+					return i;
+				}
+				starts[i] = start;
+				ends[i] = end;
+				previousEnd = end;
+			}
+			return -1;
+		}
+		if (scale == 1) {
+			// Frequent case, without floating point
+			for (int i = 0; i < size; i++) {
+				long start = starts[i] + shift;
+				long end = ends[i] + extend + shift;
+				if (start <= previousEnd) {
+					return i;
+				}
+				starts[i] = start;
+				ends[i] = end;
+				previousEnd = end;
+			}
+			return -1;
+		}
+		for (int i = 0; i < size; i++) {
+			long start = Math.round(scale * starts[i]) + shift;
+			long end = Math.round(scale * (ends[i] + extend)) + shift;
+			if (start <= previousEnd) {
+				return i;
+			}
+			starts[i] = start;
+			ends[i] = end;
+			previousEnd = end;
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return "extend " + extend + " ms, " + (anchors == null ? "" : anchors.size() + " anchor(s), ") + "scale " + scale + ", shift " + shift + " ms";
+	}
+}
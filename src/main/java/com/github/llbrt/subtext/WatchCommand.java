@@ -0,0 +1,343 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
+
+/**
+ * Long running watcher of a spool directory: each subtitle file dropped in it
+ * is processed once unchanged for the debounce time, with the time segments of
+ * the <code>.segments</code> file of the same name, in a warm JVM.
+ * <p>
+ * <code>video.fr.srt</code> is cut with <code>video.fr.segments</code>, or
+ * else <code>video.segments</code> shared by all the tracks. A subtitle file
+ * without segments file waits for it, unless unpaired files are processed as a
+ * whole; it is processed again when its segments file arrives or changes.
+ */
+@Command(name = "watch", description = "Watch a directory and process the subtitle files dropped in it")
+final class WatchCommand implements Callable<Integer> {
+	private static final Logger logger = LoggerFactory.getLogger(WatchCommand.class);
+
+	private static final String SRT_EXTENSION = ".srt";
+	private static final String NEW_SRT_EXTENSION = ".new.srt";
+	private static final String SEGMENTS_EXTENSION = ".segments";
+
+	@Mixin
+	private ProcessingOptions options;
+
+	@Option(names = { "-t", "--threads" }, description = "Count of files processed in parallel (default: count of processors)")
+	private Optional<Integer> threads;
+
+	@Option(names = { "-d", "--output-dir" }, description = "Output directory (default: <subtitles>.new.srt next to each file)")
+	private Optional<Path> outputDir;
+
+	@Option(names = { "--debounce" }, description = "Time a file must stay unchanged before being processed, in milliseconds (default: ${DEFAULT-VALUE})", defaultValue = "1000")
+	private long debounce;
+
+	@Option(names = { "--process-unpaired" }, description = "Process the subtitle files without segments file as a whole (default: wait for their segments file)")
+	private boolean processUnpaired;
+
+	@Parameters(index = "0", paramLabel = "<directory>", description = "Directory receiving the subtitle and segments files")
+	private Path directory;
+
+	@Spec
+	private CommandSpec spec;
+
+	/**
+	 * Size and modification time of a subtitle file and of its segments file,
+	 * unchanged once completely written.
+	 */
+	private static record Snapshot(long size, long modified, @Nullable Path segments, long segmentsSize, long segmentsModified) {
+	}
+
+	/**
+	 * Subtitle file waiting for the debounce time.
+	 */
+	private static final class Pending {
+		Snapshot snapshot;
+		long deadline;
+
+		Pending(Snapshot snapshot, long deadline) {
+			this.snapshot = snapshot;
+			this.deadline = deadline;
+		}
+	}
+
+	// Used by the watching thread only
+	private final Map<Path, Pending> pending = new HashMap<>();
+	// Last snapshot processed of each file, updated by the workers
+	private final Map<Path, Snapshot> processed = new ConcurrentHashMap<>();
+	// Files being processed, added by the watching thread, removed by the workers
+	private final Set<Path> running = ConcurrentHashMap.newKeySet();
+
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private volatile WatchService watcher;
+	private @Nullable TimeAnchors anchors;
+
+	@Override
+	public Integer call() throws Exception {
+		if (!Files.isDirectory(directory)) {
+			throw new CommandLine.ParameterException(spec.commandLine(), "'" + directory + "' is not a directory");
+		}
+		try {
+			anchors = SrtJob.loadAnchors(options.anchorsFile());
+		} catch (ProcessingException e) {
+			throw new CommandLine.ExecutionException(spec.commandLine(), e.getMessage());
+		}
+		if (outputDir.isPresent()) {
+			Files.createDirectories(outputDir.get());
+			if (Files.isSameFile(outputDir.get(), directory)) {
+				// Outputs would overwrite the files watched, processed again and again
+				throw new CommandLine.ParameterException(spec.commandLine(), "Output directory can't be the directory watched");
+			}
+		}
+
+		var executor = Executors.newFixedThreadPool(Math.max(1, threads.orElse(Runtime.getRuntime().availableProcessors())));
+		var shutdownHook = new Thread(this::stopAndWait, "subfileprocessor-shutdown");
+		try (var watcher = directory.getFileSystem().newWatchService()) {
+			directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+			this.watcher = watcher;
+			Runtime.getRuntime().addShutdownHook(shutdownHook);
+			logger.info("Watching '{}'", directory);
+
+			// Files dropped before the start
+			scan();
+			while (true) {
+				WatchKey key;
+				try {
+					key = pending.isEmpty() ? watcher.take() : watcher.poll(nextDeadline() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+				} catch (ClosedWatchServiceException | InterruptedException e) {
+					// Stopped
+					break;
+				}
+				if (key != null) {
+					for (var event : key.pollEvents()) {
+						if (event.kind() == OVERFLOW) {
+							scan();
+						} else {
+							touched(directory.resolve((Path) event.context()));
+						}
+					}
+					if (!key.reset()) {
+						logger.error("'{}' can't be watched anymore", directory);
+						break;
+					}
+				}
+				submitReady(executor);
+			}
+		} finally {
+			// Let the running files complete
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				// Already shutting down
+			}
+			logger.info("Watch stopped");
+			stopped.countDown();
+		}
+		return 0;
+	}
+
+	private void stopAndWait() {
+		var current = watcher;
+		if (current != null) {
+			try {
+				current.close();
+			} catch (IOException e) {
+				logger.warn("Failed to stop watching '{}'", directory, e);
+			}
+		}
+		try {
+			stopped.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void scan() throws IOException {
+		try (var files = Files.list(directory)) {
+			files.sorted().forEach(this::touched);
+		}
+	}
+
+	/**
+	 * Schedules the subtitle files affected by a change of <code>file</code>,
+	 * once the debounce time elapsed.
+	 */
+	private void touched(Path file) {
+		var name = file.getFileName().toString();
+		if (name.endsWith(SEGMENTS_EXTENSION)) {
+			// Subtitle files cut with these segments processed again
+			try (var files = Files.list(directory)) {
+				files.filter(WatchCommand::isSubtitleFile)
+						.filter(subtitles -> file.equals(segmentsFile(subtitles)))
+						.forEach(this::schedule);
+			} catch (IOException e) {
+				logger.warn("Failed to list '{}'", directory, e);
+			}
+		} else if (isSubtitleFile(file)) {
+			schedule(file);
+		}
+	}
+
+	private void schedule(Path subtitles) {
+		var snapshot = snapshot(subtitles);
+		if (snapshot == null) {
+			pending.remove(subtitles);
+			return;
+		}
+		long deadline = System.currentTimeMillis() + debounce;
+		var current = pending.get(subtitles);
+		if (current == null) {
+			pending.put(subtitles, new Pending(snapshot, deadline));
+		} else {
+			current.snapshot = snapshot;
+			current.deadline = deadline;
+		}
+	}
+
+	private long nextDeadline() {
+		return pending.values().stream().mapToLong(file -> file.deadline).min().orElse(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Submits the files unchanged since the debounce time; changed ones wait
+	 * again, as the ones still being processed, submitted once their run is
+	 * completed.
+	 */
+	private void submitReady(ExecutorService executor) {
+		long now = System.currentTimeMillis();
+		var iterator = pending.entrySet().iterator();
+		while (iterator.hasNext()) {
+			var entry = iterator.next();
+			var file = entry.getValue();
+			if (file.deadline > now) {
+				continue;
+			}
+			var subtitles = entry.getKey();
+			if (running.contains(subtitles)) {
+				// Not processed twice at the same time, to the same destination
+				file.deadline = now + debounce;
+				continue;
+			}
+			var snapshot = snapshot(subtitles);
+			if (snapshot == null) {
+				iterator.remove();
+			} else if (!snapshot.equals(file.snapshot)) {
+				// Still being written
+				file.snapshot = snapshot;
+				file.deadline = now + debounce;
+			} else if (snapshot.segments() == null && !processUnpaired) {
+				// Scheduled again when its segments file arrives
+				iterator.remove();
+				logger.info("Waiting for the segments file of '{}'", subtitles);
+			} else {
+				iterator.remove();
+				if (!snapshot.equals(processed.get(subtitles))) {
+					running.add(subtitles);
+					executor.execute(() -> process(subtitles, snapshot));
+				}
+			}
+		}
+	}
+
+	private void process(Path subtitles, Snapshot snapshot) {
+		var destination = outputDir.isEmpty() ? SrtJob.defaultDestination(subtitles) : outputDir.get().resolve(subtitles.getFileName());
+		try {
+			var timeSegments = SrtJob.loadTimeSegments(snapshot.segments());
+			// Written through a temporary file, renamed once complete
+			new SrtJob(options, timeSegments, anchors).process(subtitles, destination);
+			processed.put(subtitles, snapshot);
+			logger.info("Processed '{}' to '{}'", subtitles, destination);
+		} catch (ProcessingException e) {
+			logger.error("Failed to process '{}': {}", subtitles, e.getMessage());
+		} catch (RuntimeException e) {
+			logger.error("Failed to process '{}'", subtitles, e);
+		} finally {
+			running.remove(subtitles);
+		}
+	}
+
+	/**
+	 * @return the current state of <code>subtitles</code> and of its segments
+	 *         file, <code>null</code> if it doesn't exist anymore.
+	 */
+	@Nullable
+	private static Snapshot snapshot(Path subtitles) {
+		try {
+			var segments = segmentsFile(subtitles);
+			long segmentsSize = 0;
+			long segmentsModified = 0;
+			if (segments != null) {
+				segmentsSize = Files.size(segments);
+				segmentsModified = Files.getLastModifiedTime(segments).toMillis();
+			}
+			return new Snapshot(Files.size(subtitles), Files.getLastModifiedTime(subtitles).toMillis(), segments, segmentsSize, segmentsModified);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			logger.warn("Failed to read the state of '{}'", subtitles, e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the segments file of <code>subtitles</code>: same name with
+	 *         <code>.segments</code> instead of <code>.srt</code>, or without
+	 *         its other extensions (language...); <code>null</code> if none.
+	 */
+	@Nullable
+	static Path segmentsFile(Path subtitles) {
+		var name = subtitles.getFileName().toString();
+		var base = name.substring(0, name.length() - SRT_EXTENSION.length());
+		while (true) {
+			var segments = subtitles.resolveSibling(base + SEGMENTS_EXTENSION);
+			if (Files.isRegularFile(segments)) {
+				return segments;
+			}
+			int dot = base.lastIndexOf('.');
+			if (dot <= 0) {
+				return null;
+			}
+			base = base.substring(0, dot);
+		}
+	}
+
+	private static boolean isSubtitleFile(Path path) {
+		var name = path.getFileName().toString();
+		return name.endsWith(SRT_EXTENSION) && !name.endsWith(NEW_SRT_EXTENSION) && Files.isRegularFile(path);
+	}
+}
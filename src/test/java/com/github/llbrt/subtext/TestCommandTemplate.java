@@ -0,0 +1,53 @@
+package com.github.llbrt.subtext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class TestCommandTemplate {
+
+	@Test
+	// Quoted arguments kept whole, placeholders replaced inside arguments
+	void expand() throws Exception {
+		var template = new CommandTemplate("ffmpeg -i {input}  -metadata 'title=My {input}' \"-ss\" {start} out{index}.ts");
+		assertEquals(List.of("ffmpeg", "-i", "my video.ts", "-metadata", "title=My my video.ts", "-ss", "00:01:00.000", "out3.ts"),
+				template.expand(Map.of("input", "my video.ts", "start", "00:01:00.000", "index", "3")));
+	}
+
+	@Test
+	// A single placeholder with a list value expands to several arguments
+	void expandList() throws Exception {
+		var template = new CommandTemplate("mkvmerge -o {output} {parts} {subtitles} --title {output}");
+		assertEquals(List.of("mkvmerge", "-o", "out.mkv", "v0.ts", "+v1.ts", "--title", "out.mkv"),
+				template.expand(Map.of("output", "out.mkv", "parts", List.of("v0.ts", "+v1.ts"), "subtitles", List.of())));
+	}
+
+	@Test
+	// Values inserted are not expanded again, whatever the order of the placeholders
+	void expandOnce() throws Exception {
+		var template = new CommandTemplate("cut {input}:{output} {{input}} {output}");
+		var values = new LinkedHashMap<String, String>();
+		values.put("output", "{input}.mkv");
+		values.put("input", "{output}.ts");
+		assertEquals(List.of("cut", "{output}.ts:{input}.mkv", "{{output}.ts}", "{input}.mkv"), template.expand(values));
+	}
+
+	@Test
+	// Unknown placeholders are kept as is
+	void unknownPlaceholder() throws Exception {
+		assertEquals(List.of("echo", "{unknown}"), new CommandTemplate("echo {unknown}").expand(Map.of()));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "", "   ", "echo 'unterminated", "echo \"unterminated" })
+	void invalid_fails(String template) throws Exception {
+		assertThrows(IllegalArgumentException.class, () -> new CommandTemplate(template));
+	}
+}
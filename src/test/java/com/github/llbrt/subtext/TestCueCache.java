@@ -0,0 +1,155 @@
+package com.github.llbrt.subtext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import picocli.CommandLine;
+
+class TestCueCache {
+
+	@TempDir
+	Path tempDir;
+
+	private static SrtFile load(Path file, boolean verifyCount) throws Exception {
+		var srtFile = new SrtFile(file);
+		srtFile.setCache(true);
+		srtFile.load(verifyCount);
+		return srtFile;
+	}
+
+	private static CueCache open(Path source, boolean verifyCount) throws Exception {
+		return CueCache.open(source, verifyCount, SrtCharset.DEFAULT_FALLBACK);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"empty",
+			"with-bom",
+			"file",
+			"file-unsorted",
+	})
+	// Same texts read from the cache
+	void reload(String fileName) throws Exception {
+		var source = Resources.copySrtFile(tempDir, fileName);
+		var parsed = load(source, true);
+		assertTrue(Files.isRegularFile(CueCache.cacheFile(source)));
+
+		try (var cache = open(source, true)) {
+			assertNotNull(cache);
+			var cues = new CueTable();
+			while (cache.nextText(cues, true)) {
+				// Next text
+			}
+			assertEquals(parsed.cues().size(), cues.size());
+		}
+		assertEquals(parsed.texts(), load(source, true).texts());
+	}
+
+	@Test
+	// Cache ignored once the file changed
+	void sourceChanged() throws Exception {
+		var source = Resources.copySrtFile(tempDir, "file");
+		load(source, true);
+		Files.writeString(source, "5\n00:12:00,000 --> 00:12:01,000\nNew\n\n", StandardOpenOption.APPEND);
+		assertNull(open(source, true));
+
+		// Written again
+		assertEquals(5, load(source, true).texts().size());
+		assertNotNull(open(source, true));
+	}
+
+	@Test
+	// Modification time changed, same contents
+	void sourceTouched() throws Exception {
+		var source = Resources.copySrtFile(tempDir, "file");
+		load(source, true);
+		Files.setLastModifiedTime(source, FileTime.fromMillis(0));
+		assertNotNull(open(source, true));
+		// Not hashed again on the next runs
+		assertEquals(0, ByteBuffer.wrap(Files.readAllBytes(CueCache.cacheFile(source))).getLong(16));
+
+		// Same size, other contents
+		Files.writeString(source, Files.readString(source).replace("Baby", "Babe"));
+		Files.setLastModifiedTime(source, FileTime.fromMillis(1000));
+		assertNull(open(source, true));
+	}
+
+	@Test
+	// Texts decoded with another fallback charset
+	void otherFallbackCharset() throws Exception {
+		var source = Resources.copySrtFile(tempDir, "file");
+		load(source, true);
+		assertNull(CueCache.open(source, true, Charset.forName("ISO-8859-15")));
+		assertNotNull(open(source, true));
+	}
+
+	@Test
+	// Not written for texts failing to load
+	void invalidTexts() throws Exception {
+		var source = Resources.copySrtFile(tempDir, "err-time-overlap");
+		assertThrows(IllegalArgumentException.class, () -> load(source, true));
+		assertFalse(Files.exists(CueCache.cacheFile(source)));
+	}
+
+	@Test
+	// Not written if the file changed since it was parsed
+	void sourceChangedWhileParsed() throws Exception {
+		var source = Resources.copySrtFile(tempDir, "file");
+		var stamp = CueCache.Stamp.of(source);
+		var srtFile = new SrtFile(source);
+		srtFile.load(true);
+		Files.writeString(source, "5\n00:12:00,000 --> 00:12:01,000\nNew\n\n", StandardOpenOption.APPEND);
+		assertThrows(IOException.class, () -> CueCache.write(source, stamp, srtFile.cues(), true, SrtCharset.DEFAULT_FALLBACK));
+		assertFalse(Files.exists(CueCache.cacheFile(source)));
+	}
+
+	@Test
+	// Counters not verified when cached
+	void invalidCount() throws Exception {
+		var source = Resources.copySrtFile(tempDir, "err-count");
+		assertEquals(4, load(source, false).texts().size());
+		assertNotNull(open(source, false));
+		assertNull(open(source, true));
+	}
+
+	@Test
+	void invalidCache() throws Exception {
+		var source = Resources.copySrtFile(tempDir, "file");
+		Files.writeString(CueCache.cacheFile(source), "not a cache");
+		assertNull(open(source, true));
+		assertEquals(4, load(source, true).texts().size());
+	}
+
+	@Test
+	// Same output, from the parsed file then from the cache
+	void process() throws Exception {
+		var source = Resources.copySrtFile(tempDir, "file");
+		var segments = Resources.segmentsPath("segment3-text3");
+		var reference = Resources.srtFilePath("file-segment3-text3");
+		for (int run = 0; run < 2; run++) {
+			var destination = tempDir.resolve("run" + run + ".srt");
+			int exitCode = new CommandLine(new SrtFileProcessor())
+					.execute("-C", "-o", destination.toString(), source.toString(), segments.toString());
+			assertEquals(0, exitCode);
+			assertEquals(-1, Files.mismatch(reference, destination));
+		}
+		assertFalse(Files.exists(CueCache.cacheFile(Resources.srtFilePath("file"))));
+	}
+}
@@ -0,0 +1,103 @@
+package com.github.llbrt.subtext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class TestCueIndex {
+
+	private static List<Integer> counts(List<SrtText> texts) {
+		return texts.stream().map(SrtText::count).toList();
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			// Texts of file.srt: 00:06:10,360 --> 00:06:11,735, then 00:11:16,520 --> 00:11:17,935...
+			"0, ''",
+			"370360, 1",
+			"371735, 1",
+			"371736, ''",
+			"676520, 2",
+	})
+	void cuesAt(long time, String expected) throws Exception {
+		var srtFile = Resources.createTestSrtFile("file");
+		srtFile.load(true);
+		var found = counts(srtFile.index().cuesAt(time));
+		assertEquals(expected.isEmpty() ? List.of() : List.of(Integer.valueOf(expected)), found);
+	}
+
+	@Test
+	void cuesIn() throws Exception {
+		var srtFile = Resources.createTestSrtFile("file");
+		srtFile.load(true);
+		var index = srtFile.index();
+		assertEquals(4, index.size());
+		assertEquals(List.of(1, 2, 3, 4), counts(index.cuesIn(new SrtTime.Value(0, 10_000_000))));
+		assertEquals(List.of(1, 2), counts(index.cuesIn(new SrtTime.Value(371_735, 676_520))));
+		assertEquals(List.of(), counts(index.cuesIn(new SrtTime.Value(371_736, 676_519))));
+		assertEquals(srtFile.texts().get(1), index.cuesAt(676_520).get(0));
+	}
+
+	@Test
+	// Texts shared between the callers can't be changed
+	void unmodifiableTexts() throws Exception {
+		var srtFile = Resources.createTestSrtFile("file");
+		srtFile.load(true);
+		var lines = srtFile.index().cuesAt(370_360).get(0).texts();
+		assertThrows(UnsupportedOperationException.class, () -> lines.add("Added"));
+		assertEquals(List.of("Les mains en l'air !"), srtFile.index().cuesAt(370_360).get(0).texts());
+	}
+
+	@Test
+	// Kept while the texts are unchanged
+	void rebuilt() throws Exception {
+		var srtFile = Resources.createTestSrtFile("file");
+		srtFile.load(true);
+		var index = srtFile.index();
+		assertSame(index, srtFile.index());
+		srtFile.shiftTexts(1000);
+		assertEquals(List.of(), srtFile.index().cuesAt(370_360));
+		assertEquals(List.of(1), counts(index.cuesAt(370_360)));
+	}
+
+	@Test
+	// Same texts as a linear search, overlapping texts included
+	void randomTexts() throws Exception {
+		var random = new Random(42);
+		var cues = new CueTable();
+		long start = 0;
+		for (int i = 0; i < 2000; i++) {
+			start += random.nextInt(3000);
+			cues.add(i + 1, new SrtTime.Value(start, start + random.nextInt(i % 100 == 0 ? 100_000 : 5000)), List.of("text"));
+		}
+		var index = CueIndex.of(cues);
+		var texts = cues.texts();
+		for (int i = 0; i < 1000; i++) {
+			long from = random.nextLong(start + 10_000);
+			var range = new SrtTime.Value(from, from + random.nextInt(20_000));
+			var expected = new ArrayList<SrtText>();
+			for (var text : texts) {
+				if (text.time().overlap(range)) {
+					expected.add(text);
+				}
+			}
+			assertEquals(expected, index.cuesIn(range));
+		}
+	}
+
+	@Test
+	void unsorted_fails() throws Exception {
+		var cues = new CueTable();
+		cues.add(1, new SrtTime.Value(2000, 3000), List.of("2"));
+		cues.add(2, new SrtTime.Value(1000, 1500), List.of("1"));
+		assertThrows(IllegalArgumentException.class, () -> CueIndex.of(cues));
+	}
+}
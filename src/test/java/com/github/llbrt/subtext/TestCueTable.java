@@ -0,0 +1,73 @@
+package com.github.llbrt.subtext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TestCueTable {
+
+	@Test
+	void addAndView() {
+		var cues = new CueTable();
+		for (int i = 0; i < 100; i++) {
+			cues.add(i + 1, new SrtTime.Value(1000 * i, 1000 * i + 500), List.of("text " + i, "é " + i));
+		}
+		assertEquals(100, cues.size());
+		assertEquals(200, cues.lines().size());
+
+		var text = cues.texts().get(42);
+		assertEquals(43, text.count());
+		assertEquals("00:00:42,000 --> 00:00:42,500", text.time().toString());
+		assertEquals(List.of("text 42", "é 42"), text.texts());
+	}
+
+	@Test
+	void sort() {
+		var cues = new CueTable();
+		cues.add(1, new SrtTime.Value(3000, 4000), List.of("3"));
+		cues.add(2, new SrtTime.Value(1000, 2500), List.of("2"));
+		cues.add(3, new SrtTime.Value(1000, 2000), List.of("1"));
+		cues.sort();
+
+		var texts = cues.texts();
+		assertEquals(List.of("1"), texts.get(0).texts());
+		assertEquals(3, texts.get(0).count());
+		assertEquals(List.of("2"), texts.get(1).texts());
+		assertEquals(List.of("3"), texts.get(2).texts());
+		assertEquals(3000, cues.start(2));
+	}
+
+	@Test
+	// Several merged runs, same order as a stable sort
+	void sortMany() {
+		var random = new Random(42);
+		var cues = new CueTable();
+		var expected = new ArrayList<SrtText>();
+		for (int i = 0; i < 1000; i++) {
+			long start = 1000 * random.nextInt(100);
+			var text = new SrtText(i + 1, new SrtTime.Value(start, start + 100 * random.nextInt(5)), List.of("text " + i));
+			cues.add(text.count(), text.time(), text.texts());
+			expected.add(text);
+		}
+		expected.sort(Comparator.comparingLong((SrtText text) -> text.time().start()).thenComparingLong(text -> text.time().end()));
+		cues.sort();
+		assertEquals(expected, cues.texts());
+	}
+
+	@Test
+	void sharedLines() {
+		var cues = new CueTable();
+		cues.add(1, new SrtTime.Value(1000, 2000), List.of("a", "b"));
+
+		var other = new CueTable(cues.lines());
+		other.add(1, 0, 10, cues.firstLine(0), cues.lineCount(0));
+		assertSame(cues.lines(), other.lines());
+		assertEquals(List.of("a", "b"), other.texts().get(0).texts());
+	}
+}
@@ -0,0 +1,76 @@
+package com.github.llbrt.subtext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.llbrt.subtext.RunMetrics.Counter;
+import com.github.llbrt.subtext.RunMetrics.Phase;
+
+class TestMetricsReport {
+
+	@Test
+	void countersWithoutTimes() throws Exception {
+		var metrics = new RunMetrics(false);
+		metrics.mark();
+		metrics.add(Counter.PARSED, 4);
+		metrics.increment(Counter.DROPPED);
+		metrics.lap(Phase.LOAD);
+
+		assertEquals(4, metrics.count(Counter.PARSED));
+		assertEquals(1, metrics.count(Counter.DROPPED));
+		assertEquals(0, metrics.nanos(Phase.LOAD));
+	}
+
+	@Test
+	void laps() throws Exception {
+		var metrics = new RunMetrics(true);
+		metrics.mark();
+		var data = new byte[1_000_000];
+		metrics.lap(Phase.LOAD);
+		metrics.lap(Phase.SAVE);
+
+		assertTrue(metrics.nanos(Phase.LOAD) > 0);
+		assertTrue(data.length <= metrics.allocatedBytes(Phase.LOAD) || metrics.allocatedBytes(Phase.LOAD) == -1);
+		assertTrue(metrics.allocatedBytes(Phase.SAVE) < data.length);
+	}
+
+	@Test
+	void percentiles() throws Exception {
+		var report = new MetricsReport();
+		for (int i = 1; i <= 100; i++) {
+			var metrics = new RunMetrics(true);
+			metrics.increment(Counter.PARSED);
+			for (int lap = 0; lap < i; lap++) {
+				metrics.mark();
+				metrics.lap(Phase.EXTRACT);
+			}
+			report.add(metrics);
+		}
+
+		assertEquals(100, report.total(Counter.PARSED));
+		long p50 = report.nanos(Phase.EXTRACT, 50);
+		long p90 = report.nanos(Phase.EXTRACT, 90);
+		long max = report.nanos(Phase.EXTRACT, 100);
+		assertTrue(p50 <= p90 && p90 <= max);
+		assertEquals(0, new MetricsReport().nanos(Phase.LOAD, 50));
+	}
+
+	@Test
+	void json() throws Exception {
+		var metrics = new RunMetrics(false);
+		metrics.setFiles(Path.of("a \"b\".srt"), Path.of("c.srt"));
+		metrics.add(Counter.PARSED, 4);
+		var report = new MetricsReport();
+		report.add(metrics);
+
+		var json = report.toJson();
+		assertTrue(json.startsWith("{\"files\":[{\"source\":\"a \\\"b\\\".srt\",\"destination\":\"c.srt\",\"phases\":{\"load\":{\"nanos\":0,"), json);
+		assertTrue(json.contains("\"summary\":{\"files\":1,"), json);
+		assertTrue(json.contains("\"extract\":{\"nanos\":{\"p50\":0,\"p90\":0,\"p99\":0,\"max\":0}"), json);
+		assertTrue(json.endsWith("\"counters\":{\"parsed\":4,\"dropped\":0,\"startTruncated\":0,\"endTruncated\":0,\"written\":0}}}"), json);
+	}
+}
@@ -0,0 +1,163 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import picocli.CommandLine;
+
+class TestSrtCharset {
+
+	@TempDir
+	Path tempDir;
+
+	private static SrtCharset.Detection detect(String hex, boolean partial) {
+		var bytes = HexFormat.of().parseHex(hex);
+		return SrtCharset.detect(ByteBuffer.wrap(bytes), bytes.length, partial, SrtCharset.DEFAULT_FALLBACK);
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"efbbbf310a, UTF-8, 3",
+			"feff0031, UTF-16BE, 2",
+			"fffe3100, UTF-16LE, 2",
+			"31000a0030003000, UTF-16LE, 0",
+			"0031000a00300030, UTF-16BE, 0",
+			"310a566f75732064c3a9736972657a203f0a, UTF-8, 0",
+			"310a566f75732064e9736972657a203f0a, windows-1252, 0",
+			"'', UTF-8, 0",
+	})
+	void detect(String hex, String charset, int bomLength) throws Exception {
+		var detection = detect(hex, false);
+		assertEquals(Charset.forName(charset), detection.charset());
+		assertEquals(bomLength, detection.bomLength());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			// Overlong encodings
+			"c0af",
+			"e080af",
+			"f0808080",
+			// Surrogate
+			"eda080",
+			// Above U+10FFFF
+			"f4908080",
+			// Invalid bytes
+			"ff",
+			"3031323334353637383980",
+	})
+	void invalidUtf8(String hex) throws Exception {
+		var bytes = HexFormat.of().parseHex(hex);
+		assertFalse(SrtCharset.isUtf8(ByteBuffer.wrap(bytes), bytes.length, true));
+	}
+
+	@Test
+	// Sequence truncated at the end of the sample
+	void truncatedUtf8() throws Exception {
+		assertEquals(UTF_8, detect("566f75732064c3", true).charset());
+		assertEquals(SrtCharset.DEFAULT_FALLBACK, detect("566f75732064c3", false).charset());
+		assertTrue(SrtCharset.isUtf8(ByteBuffer.wrap(HexFormat.of().parseHex("e282ac")), 3, false));
+	}
+
+	private Path transcode(String fileName, Charset charset, boolean bom) throws Exception {
+		var contents = Files.readString(Resources.srtFilePath(fileName));
+		var file = tempDir.resolve(fileName + "-" + charset.name() + (bom ? "-bom" : "") + ".srt");
+		Files.writeString(file, (bom ? "\uFEFF" : "") + contents, charset);
+		return file;
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"windows-1252, false",
+			"UTF-16LE, true",
+			"UTF-16BE, true",
+			"UTF-16LE, false",
+			"UTF-16BE, false",
+	})
+	// Same texts whatever the charset, streaming or mapped
+	void load(String charset, boolean bom) throws Exception {
+		var expected = Resources.createTestSrtFile("file");
+		expected.load(true);
+		var file = transcode("file", Charset.forName(charset), bom);
+
+		var srtFile = new SrtFile(file);
+		srtFile.load(true);
+		assertEquals(expected.texts(), srtFile.texts());
+
+		var mapped = new SrtFile(file);
+		mapped.loadMapped(true);
+		assertEquals(expected.texts(), mapped.texts());
+	}
+
+	@Test
+	// Fallback charset given on the command line, output in UTF-8
+	void fallbackCharset() throws Exception {
+		var file = transcode("file", Charset.forName("ISO-8859-15"), false);
+		var destination = tempDir.resolve("latin9.srt");
+		int exitCode = new CommandLine(new SrtFileProcessor())
+				.execute("--fallback-charset", "ISO-8859-15", "-o", destination.toString(), file.toString());
+		assertEquals(0, exitCode);
+		assertEquals(-1, Files.mismatch(Resources.srtFilePath("file"), destination));
+	}
+
+	/**
+	 * @return ASCII texts, from counter 1, longer than the detection sample.
+	 */
+	private static String asciiTexts() {
+		var contents = new StringBuilder();
+		for (int count = 1; contents.length() <= SrtCharset.SAMPLE_SIZE; count++) {
+			var time = String.format("00:%02d:%02d", count / 60 % 60, count % 60);
+			contents.append(count).append('\n')
+					.append(time).append(",000 --> ").append(time).append(",500\n")
+					.append("Text ").append(count).append("\n\n");
+		}
+		return contents.toString();
+	}
+
+	@Test
+	// First non-ASCII character after the sample, same texts streaming or mapped
+	void nonAsciiAfterSample() throws Exception {
+		var file = tempDir.resolve("late.srt");
+		Files.writeString(file, asciiTexts() + "9999\n01:00:00,000 --> 01:00:01,000\nCafé crème\n\n", Charset.forName("windows-1252"));
+
+		var srtFile = new SrtFile(file);
+		srtFile.load(false);
+		var texts = srtFile.texts();
+		assertEquals(List.of("Café crème"), texts.get(texts.size() - 1).texts());
+
+		var mapped = new SrtFile(file);
+		mapped.loadMapped(false);
+		assertEquals(texts, mapped.texts());
+	}
+
+	@Test
+	// UTF-8 in the sample, windows-1252 after it: fails instead of guessing
+	void invalidUtf8AfterSample() throws Exception {
+		var file = tempDir.resolve("mixed.srt");
+		var contents = new ByteArrayOutputStream();
+		contents.writeBytes(("0\n00:00:00,000 --> 00:00:00,500\nCafé\n\n" + asciiTexts()).getBytes(UTF_8));
+		contents.writeBytes("9999\n01:00:00,000 --> 01:00:01,000\nCafé\n\n".getBytes(Charset.forName("windows-1252")));
+		Files.write(file, contents.toByteArray());
+
+		var srtFile = new SrtFile(file);
+		assertThrows(CharacterCodingException.class, () -> srtFile.load(false));
+	}
+}
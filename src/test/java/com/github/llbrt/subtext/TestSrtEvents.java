@@ -0,0 +1,108 @@
+package com.github.llbrt.subtext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import picocli.CommandLine;
+
+class TestSrtEvents {
+
+	private static final List<String> EVENTS = List.of(
+			"subtext.Load",
+			"subtext.Validate",
+			"subtext.Extend",
+			"subtext.Shift",
+			"subtext.ExtractSegment",
+			"subtext.Save",
+			"subtext.Process");
+
+	@TempDir
+	Path tempDir;
+
+	private Map<String, List<RecordedEvent>> record(Runnable action) throws Exception {
+		var dump = tempDir.resolve("recording.jfr");
+		try (var recording = new Recording()) {
+			EVENTS.forEach(event -> recording.enable(event).withoutThreshold());
+			recording.start();
+			action.run();
+			recording.stop();
+			recording.dump(dump);
+		}
+		return RecordingFile.readAllEvents(dump).stream()
+				.filter(event -> event.getEventType().getName().startsWith("subtext."))
+				.collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+	}
+
+	@Test
+	// Texts processed in memory
+	void inMemory() throws Exception {
+		var timeSegments = Resources.createTestTimeSegments("segment2-text2-trunc-start");
+		timeSegments.load();
+		var destination = tempDir.resolve("in-memory.srt");
+
+		var events = record(() -> {
+			try {
+				var srtFile = Resources.createTestSrtFile("file");
+				srtFile.load(true);
+				srtFile.extendTexts(10);
+				srtFile.shiftTexts(10);
+				new SrtFile(destination, srtFile.extractTimeSegments(timeSegments)).save();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		var load = events.get("subtext.Load").get(0);
+		assertEquals(Resources.srtFilePath("file").toString(), load.getString("file"));
+		assertEquals(4, load.getInt("texts"));
+		assertEquals(Files.size(Resources.srtFilePath("file")), load.getLong("bytes"));
+		assertEquals(4, events.get("subtext.Validate").get(0).getInt("texts"));
+		assertEquals(10, events.get("subtext.Extend").get(0).getLong("increment"));
+		assertEquals(10, events.get("subtext.Shift").get(0).getLong("delta"));
+
+		var segments = events.get("subtext.ExtractSegment");
+		assertEquals(2, segments.size());
+		assertEquals(2, segments.stream().mapToInt(event -> event.getInt("texts")).sum());
+		assertEquals(1, segments.stream().mapToInt(event -> event.getInt("startTruncated")).sum());
+
+		var save = events.get("subtext.Save").get(0);
+		assertEquals(2, save.getInt("texts"));
+		assertEquals(Files.size(destination), save.getLong("bytes"));
+	}
+
+	@Test
+	// Texts processed in a single pass
+	void singlePass() throws Exception {
+		var source = Resources.copySrtFile(tempDir, "file");
+		var destination = tempDir.resolve("single-pass.srt");
+		var segments = Resources.segmentsPath("segment2-text2-trunc-start");
+
+		var events = record(() -> new CommandLine(new SrtFileProcessor())
+				.execute("-o", destination.toString(), source.toString(), segments.toString()));
+
+		var process = events.get("subtext.Process").get(0);
+		assertTrue(process.getBoolean("streaming"));
+		assertEquals(4, process.getInt("textsRead"));
+		assertEquals(2, process.getInt("textsWritten"));
+		assertEquals(Files.size(source), process.getLong("bytesRead"));
+		assertEquals(Files.size(destination), process.getLong("bytesWritten"));
+
+		var extracted = events.get("subtext.ExtractSegment");
+		assertEquals(2, extracted.size());
+		assertEquals(2, extracted.stream().mapToInt(event -> event.getInt("texts")).sum());
+		assertEquals(1, extracted.stream().mapToInt(event -> event.getInt("startTruncated")).sum());
+	}
+}
@@ -1,13 +1,25 @@
 package com.github.llbrt.subtext;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import com.github.llbrt.subtext.RepairReport.Action;
+
 class TestSrtFile {
 
+	@TempDir
+	Path tempDir;
+
 	@ParameterizedTest
 	@ValueSource(strings = {
 			"empty",
@@ -31,9 +43,126 @@ class TestSrtFile {
 		assertThrows(IllegalArgumentException.class, () -> srtFile.load(true));
 	}
 
+	private static int lineCount(CueTable cues) {
+		int lineCount = 0;
+		for (int i = 0; i < cues.size(); i++) {
+			lineCount += cues.lineCount(i);
+		}
+		return lineCount;
+	}
+
+	@Test
+	// Lines of the previous load not kept
+	void reload() throws Exception {
+		var srtFile = Resources.createTestSrtFile("file");
+		srtFile.load(true);
+		srtFile.loadMapped(true);
+		srtFile.load(true);
+		assertEquals(lineCount(srtFile.cues()), srtFile.cues().lines().size());
+	}
+
+	@Test
+	// Texts of the file unchanged by changes of the texts extracted
+	void extractWithoutSegment() throws Exception {
+		var srtFile = Resources.createTestSrtFile("file");
+		srtFile.load(true);
+		var texts = List.copyOf(srtFile.texts());
+		var extracted = srtFile.extractTimeSegments(new TimeSegments(null));
+		assertEquals(texts, extracted.texts());
+		extracted.setTime(0, 0, 1);
+		assertEquals(texts, srtFile.texts());
+	}
+
 	@Test
 	void loadInvalidCountSuccess() throws Exception {
 		var srtFile = Resources.createTestSrtFile("err-count");
 		srtFile.load(false);
 	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"err-end, 3, 'Line #15: skipped, unexpected end of file'",
+			"err-count, 3, 'Line #8: skipped, unexpected index=4'",
+			"err-text, 3, 'Line #13: skipped, unexpected file line count'",
+			"err-time, 2, 'Line #7: skipped, unexpected time interval: 00:1:16,520 --> 00:11:17,935'",
+	})
+	// Invalid texts skipped
+	void loadLenient(String fileName, int size, String firstRepair) throws Exception {
+		var report = new RepairReport();
+		var srtFile = Resources.createTestSrtFile(fileName);
+		srtFile.load(true, report);
+		assertEquals(size, srtFile.cues().size());
+		assertEquals(firstRepair, report.repairs().get(0).toString());
+		// No line of the skipped texts
+		assertEquals(lineCount(srtFile.cues()), srtFile.cues().lines().size());
+
+		var mappedReport = new RepairReport();
+		var mapped = Resources.createTestSrtFile(fileName);
+		mapped.loadMapped(true, mappedReport);
+		assertEquals(srtFile.texts(), mapped.texts());
+		assertEquals(report.repairs(), mappedReport.repairs());
+	}
+
+	@Test
+	// Overlaps repaired when loading
+	void loadLenientOverlap() throws Exception {
+		var file = tempDir.resolve("overlap.srt");
+		Files.writeString(file, """
+				1
+				00:00:01,000 --> 00:00:03,000
+				one
+
+				2
+				00:00:02,000 --> 00:00:04,000
+				two
+
+				3
+				00:00:05,000 --> 00:00:06,000
+				three
+
+				4
+				00:00:05,000 --> 00:00:07,000
+				four
+
+				""");
+		var report = new RepairReport();
+		var srtFile = new SrtFile(file);
+		srtFile.load(true, report);
+
+		assertEquals(List.of(Action.CLAMPED, Action.DROPPED), report.repairs().stream().map(RepairReport.Repair::action).toList());
+		assertEquals(3, srtFile.cues().size());
+		assertEquals("00:00:01,000 --> 00:00:01,999", srtFile.texts().get(0).time().toString());
+		assertEquals(List.of("four"), srtFile.texts().get(2).texts());
+	}
+
+	@Test
+	// Extension clamped to the next text
+	void extendLenient() throws Exception {
+		var report = new RepairReport();
+		var srtFile = Resources.createTestSrtFile("file");
+		srtFile.load(true, report);
+		srtFile.extendTexts(10001, report);
+
+		assertEquals(List.of(Action.CLAMPED, Action.CLAMPED), report.repairs().stream().map(RepairReport.Repair::action).toList());
+		assertEquals("00:11:16,520 --> 00:11:22,719", srtFile.texts().get(1).time().toString());
+		assertEquals("00:11:22,720 --> 00:11:24,079", srtFile.texts().get(2).time().toString());
+		assertEquals("00:11:24,080 --> 00:11:35,660", srtFile.texts().get(3).time().toString());
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"-371000, 4, CLAMPED, '00:00:00,000 --> 00:00:00,735'",
+			"-372000, 3, DROPPED, '00:05:04,520 --> 00:05:05,935'",
+	})
+	// Texts before 00:00:00,000 clamped or dropped
+	void shiftLenient(int delta, int size, Action action, String first) throws Exception {
+		var report = new RepairReport();
+		var srtFile = Resources.createTestSrtFile("file");
+		srtFile.load(true, report);
+		srtFile.shiftTexts(delta, report);
+
+		assertEquals(List.of(action), report.repairs().stream().map(RepairReport.Repair::action).toList());
+		assertEquals(size, srtFile.cues().size());
+		assertEquals(first, srtFile.texts().get(0).time().toString());
+	}
 }
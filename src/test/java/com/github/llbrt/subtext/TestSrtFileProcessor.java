@@ -1,11 +1,19 @@
 package com.github.llbrt.subtext;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -91,6 +99,20 @@ class TestSrtFileProcessor {
 		assertEquals(-1, Files.mismatch(shifted, destination));
 	}
 
+	@Test
+	// Extend display time causes overlap, repaired
+	void extendTimeWithOverlapLenient() throws Exception {
+		SrtFileProcessor app = new SrtFileProcessor();
+		CommandLine cmd = new CommandLine(app);
+		Path destination = Files.createTempFile(tempDirRoot, "dest", ".srt");
+		int exitCode = cmd.execute("-L", "-e", "10001", "-o", destination.toString(), srtFileSource.toString());
+		assertEquals(0, exitCode);
+
+		var report = Files.readAllLines(SrtJob.reportDestination(destination));
+		assertEquals(2, report.size());
+		assertTrue(report.get(0).startsWith("Text #2: clamped"));
+	}
+
 	@ParameterizedTest
 	@ValueSource(strings = {
 			// 1 segment, 2 texts
@@ -116,4 +138,414 @@ class TestSrtFileProcessor {
 		var referenceFile = Resources.srtFilePath("file-" + keyword);
 		assertEquals(-1, Files.mismatch(referenceFile, destination));
 	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "", "-m" })
+	// Unsorted texts, processed in memory
+	void unsorted(String option) throws Exception {
+		Path source = Resources.copySrtFile(tempDirRoot, "file-unsorted");
+		Path destination = Files.createTempFile(tempDirRoot, "dest", ".srt");
+		SrtFileProcessor app = new SrtFileProcessor();
+		CommandLine cmd = new CommandLine(app);
+		int exitCode = option.isEmpty()
+				? cmd.execute("-o", destination.toString(), source.toString())
+				: cmd.execute(option, "-o", destination.toString(), source.toString());
+		assertEquals(0, exitCode);
+
+		assertEquals(-1, Files.mismatch(srtFileSource, destination));
+		try (var files = Files.list(tempDirRoot)) {
+			assertFalse(files.anyMatch(file -> file.getFileName().toString().contains(".tmp-")));
+		}
+	}
+
+	@Test
+	// Metrics written as JSON
+	void metrics() throws Exception {
+		Path destination = Files.createTempFile(tempDirRoot, "dest", ".srt");
+		Path metrics = Files.createTempFile(tempDirRoot, "metrics", ".json");
+		Path segments = Resources.segmentsPath("segment2-text2-trunc-start");
+		int exitCode = new CommandLine(new SrtFileProcessor())
+				.execute("--metrics", metrics.toString(), "-o", destination.toString(), srtFileSource.toString(), segments.toString());
+		assertEquals(0, exitCode);
+
+		var json = Files.readString(metrics);
+		assertTrue(json.contains("\"counters\":{\"parsed\":4,\"dropped\":2,\"startTruncated\":1,\"endTruncated\":0,\"written\":2}"), json);
+	}
+
+	@Test
+	// Several tracks with the same segments
+	void multiTrack() throws Exception {
+		Path sourceDir = Files.createTempDirectory(tempDirRoot, "tracks");
+		var tracks = new ArrayList<String>();
+		for (var language : new String[] { "fr", "en", "de" }) {
+			Path track = sourceDir.resolve("video." + language + ".srt");
+			Files.copy(srtFileSource, track);
+			tracks.add(track.toString());
+		}
+
+		SrtFileProcessor app = new SrtFileProcessor();
+		CommandLine cmd = new CommandLine(app);
+		Path segments = Resources.segmentsPath("segment3-text3");
+		var args = new ArrayList<>(List.of("-S", segments.toString()));
+		args.addAll(tracks);
+		int exitCode = cmd.execute(args.toArray(String[]::new));
+		assertEquals(0, exitCode);
+
+		var referenceFile = Resources.srtFilePath("file-segment3-text3");
+		for (var track : tracks) {
+			assertEquals(-1, Files.mismatch(referenceFile, Path.of(track + ".new.srt")));
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			// Segments not given with -S
+			"a.srt b.srt c.srt",
+			// Single output for several files
+			"-S time.segments -o out.srt a.srt b.srt",
+	})
+	void multiTrack_fails(String args) throws Exception {
+		SrtFileProcessor app = new SrtFileProcessor();
+		CommandLine cmd = new CommandLine(app);
+		int exitCode = cmd.execute(args.split(" "));
+		assertEquals(2, exitCode);
+	}
+
+	@Test
+	// Missing subtitles file
+	void missingSubtitles_fails() throws Exception {
+		SrtFileProcessor app = new SrtFileProcessor();
+		CommandLine cmd = new CommandLine(app);
+		int exitCode = cmd.execute("-e", "1001");
+		assertEquals(2, exitCode);
+	}
+
+	/**
+	 * Runs the command with <code>input</code> as standard input.
+	 *
+	 * @return the standard output.
+	 */
+	private static byte[] executeWithStandardStreams(byte[] input, int expectedExitCode, String... args) {
+		var in = System.in;
+		var out = System.out;
+		var output = new ByteArrayOutputStream();
+		try {
+			System.setIn(new ByteArrayInputStream(input));
+			System.setOut(new PrintStream(output, true));
+			CommandLine cmd = new CommandLine(new SrtFileProcessor());
+			cmd.setExecutionExceptionHandler(HANDLER_NO_OUTPUT);
+			assertEquals(expectedExitCode, cmd.execute(args));
+		} finally {
+			System.setIn(in);
+			System.setOut(out);
+		}
+		return output.toByteArray();
+	}
+
+	@Test
+	// Texts read from the standard input, written to the standard output
+	void standardStreams() throws Exception {
+		var output = executeWithStandardStreams(Files.readAllBytes(srtFileSource), 0, "-s", "1001", "-");
+		assertArrayEquals(Files.readAllBytes(Resources.srtFilePath("file-shifted")), output);
+	}
+
+	@Test
+	// Texts read from a file, written to the standard output
+	void standardOutput() throws Exception {
+		Path segments = Resources.segmentsPath("segment2-text2");
+		var output = executeWithStandardStreams(new byte[0], 0, "-o", "-", srtFileSource.toString(), segments.toString());
+		assertArrayEquals(Files.readAllBytes(Resources.srtFilePath("file-segment2-text2")), output);
+	}
+
+	@Test
+	// Texts read from the standard input, written to a file
+	void standardInput() throws Exception {
+		Path destination = tempDirRoot.resolve("from-stdin.srt");
+		var output = executeWithStandardStreams(Files.readAllBytes(srtFileSource), 0, "-o", destination.toString(), "-");
+		assertEquals(0, output.length);
+		assertEquals(-1, Files.mismatch(srtFileSource, destination));
+	}
+
+	@Test
+	// Unsorted texts can't be processed from the standard input
+	void standardStreamsUnsorted_fails() throws Exception {
+		var input = Files.readAllBytes(Resources.srtFilePath("file-unsorted"));
+		executeWithStandardStreams(input, 1, "-");
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"-L -",
+			"-S time.segments - a.srt",
+	})
+	void standardStreams_fails(String args) throws Exception {
+		executeWithStandardStreams(new byte[0], 2, args.split(" "));
+	}
+
+	@Test
+	// Batch on a directory, with segments
+	void batchDirectory() throws Exception {
+		Path sourceDir = Files.createTempDirectory(tempDirRoot, "batch");
+		for (int i = 0; i < 5; i++) {
+			Files.copy(srtFileSource, sourceDir.resolve("file" + i + ".srt"));
+		}
+		Path outputDir = sourceDir.resolve("out");
+
+		SrtFileProcessor app = new SrtFileProcessor();
+		CommandLine cmd = new CommandLine(app);
+		Path segments = Resources.segmentsPath("segment2-text2");
+		Path metrics = sourceDir.resolve("metrics.json");
+		int exitCode = cmd.execute("batch", "-t", "3", "-S", segments.toString(), "-d", outputDir.toString(), "--metrics", metrics.toString(), sourceDir.toString());
+		assertEquals(0, exitCode);
+		assertTrue(Files.readString(metrics).contains("\"summary\":{\"files\":5,"));
+
+		var referenceFile = Resources.srtFilePath("file-segment2-text2");
+		for (int i = 0; i < 5; i++) {
+			assertEquals(-1, Files.mismatch(referenceFile, outputDir.resolve("file" + i + ".srt")));
+		}
+	}
+
+	@Test
+	// Batch on a glob, one file failing
+	void batchGlobWithFailure() throws Exception {
+		Path sourceDir = Files.createTempDirectory(tempDirRoot, "batch");
+		Files.copy(srtFileSource, sourceDir.resolve("file.srt"));
+		Files.copy(Resources.srtFilePath("err-time"), sourceDir.resolve("err-time.srt"));
+		Files.copy(srtFileSource, sourceDir.resolve("file-shifted.srt"));
+
+		SrtFileProcessor app = new SrtFileProcessor();
+		CommandLine cmd = new CommandLine(app);
+		int exitCode = cmd.execute("batch", "-s", "1001", sourceDir.toString() + "/*.srt");
+		assertEquals(1, exitCode);
+
+		var shifted = Resources.srtFilePath("file-shifted");
+		assertEquals(-1, Files.mismatch(shifted, sourceDir.resolve("file.srt.new.srt")));
+		assertEquals(-1, Files.mismatch(shifted, sourceDir.resolve("file-shifted.srt.new.srt")));
+		assertFalse(Files.exists(sourceDir.resolve("err-time.srt.new.srt")));
+	}
+
+	@Test
+	// Files of the same name in two directories, same output file
+	void batchSameName_fails() throws Exception {
+		Path sourceDir = Files.createTempDirectory(tempDirRoot, "batch");
+		for (var dir : List.of("a", "b")) {
+			Files.createDirectories(sourceDir.resolve(dir));
+			Files.copy(srtFileSource, sourceDir.resolve(dir).resolve("ep1.srt"));
+		}
+		Path outputDir = sourceDir.resolve("out");
+
+		int exitCode = new CommandLine(new SrtFileProcessor())
+				.execute("batch", "-d", outputDir.toString(), sourceDir.toString() + "/*/ep1.srt");
+		assertEquals(2, exitCode);
+		assertFalse(Files.exists(outputDir.resolve("ep1.srt")));
+	}
+
+	@Test
+	// Output directory being the source directory
+	void batchOverwriteSource_fails() throws Exception {
+		Path sourceDir = Files.createTempDirectory(tempDirRoot, "batch");
+		Path source = sourceDir.resolve("ep1.srt");
+		Files.copy(srtFileSource, source);
+
+		int exitCode = new CommandLine(new SrtFileProcessor())
+				.execute("batch", "-s", "1001", "-d", sourceDir.resolve(".").toString(), source.toString());
+		assertEquals(2, exitCode);
+		assertEquals(-1, Files.mismatch(srtFileSource, source));
+	}
+
+	private static Path cutDirectory() throws IOException {
+		Path dir = Files.createTempDirectory(tempDirRoot, "cut");
+		Files.writeString(dir.resolve("video.ts"), "video");
+		Files.copy(srtFileSource, dir.resolve("video.fr.srt"));
+		Files.copy(srtFileSource, dir.resolve("video.en.srt"));
+		// Stand-ins for ffmpeg and mkvmerge
+		Files.writeString(dir.resolve("cut.sh"), "echo \"$1 $2 $3\" > \"$4\"\n");
+		Files.writeString(dir.resolve("merge.sh"), "out=\"$1\"; shift; printf '%s\\n' \"$@\" > \"$out\"\n");
+		return dir;
+	}
+
+	@Test
+	// Cut of a video and its subtitle files, with stand-in commands
+	void cut() throws Exception {
+		Path dir = cutDirectory();
+		Path output = dir.resolve("my video.mkv");
+		SrtFileProcessor app = new SrtFileProcessor();
+		CommandLine cmd = new CommandLine(app);
+		int exitCode = cmd.execute("cut", "-t", "2", "-S", Resources.segmentsPath("segment2-text2").toString(), "-o", output.toString(),
+				"--cut-command", "sh " + dir.resolve("cut.sh") + " {input} {start} {end} {output}",
+				"--merge-command", "sh " + dir.resolve("merge.sh") + " {output} --title {title} {appendParts} {subtitles}",
+				"--set", "title=It's {output}",
+				dir.resolve("video.ts").toString(), dir.resolve("video.fr.srt").toString(), dir.resolve("video.en.srt").toString());
+		assertEquals(0, exitCode);
+
+		var part0 = dir.resolve("my video.mkv.part0.ts");
+		var part1 = dir.resolve("my video.mkv.part1.ts");
+		var subtitles = List.of(dir.resolve("video.fr.srt.new.srt"), dir.resolve("video.en.srt.new.srt"));
+		assertEquals(List.of("--title", "It's {output}", part0.toString(), "+" + part1, subtitles.get(0).toString(), subtitles.get(1).toString()),
+				Files.readAllLines(output));
+		var referenceFile = Resources.srtFilePath("file-segment2-text2");
+		for (var file : subtitles) {
+			assertEquals(-1, Files.mismatch(referenceFile, file));
+		}
+		// Parts and logs removed once merged
+		try (var files = Files.list(dir)) {
+			assertFalse(files.anyMatch(file -> file.getFileName().toString().contains(".part") || file.getFileName().toString().endsWith(".log")));
+		}
+	}
+
+	@Test
+	// A failing cut skips the merge, its output is kept
+	void cut_fails() throws Exception {
+		Path dir = cutDirectory();
+		Path output = dir.resolve("video.mkv");
+		SrtFileProcessor app = new SrtFileProcessor();
+		CommandLine cmd = new CommandLine(app);
+		cmd.setExecutionExceptionHandler(HANDLER_NO_OUTPUT);
+		int exitCode = cmd.execute("cut", "-S", Resources.segmentsPath("segment2-text2").toString(), "-o", output.toString(),
+				"--cut-command", "sh -c 'echo failed; exit 3'",
+				"--merge-command", "sh " + dir.resolve("merge.sh") + " {output} {appendParts} {subtitles}",
+				dir.resolve("video.ts").toString());
+		assertEquals(1, exitCode);
+		assertFalse(Files.exists(output));
+		assertEquals("failed", Files.readString(dir.resolve("video.mkv.part0.ts.log")).strip());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "--cut-command=", "--merge-command='unterminated", "--set=output=video.mkv" })
+	void cutInvalidCommand_fails(String option) throws Exception {
+		SrtFileProcessor app = new SrtFileProcessor();
+		CommandLine cmd = new CommandLine(app);
+		int exitCode = cmd.execute("cut", "-S", Resources.segmentsPath("segment2-text2").toString(), "-o", "video.mkv", option, "video.ts");
+		assertEquals(2, exitCode);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"00:00:00,000 --> 00:00:01,001\n",
+			"01:00:00,000 --> 01:00:01,001\n00:00:00,000 --> 00:00:01,001\n",
+			"00:05:00,000 --> 00:05:01,001\n00:10:00,000 --> 00:10:01,001\n00:20:00,000 --> 00:20:01,001\n",
+	})
+	// Anchors without drift, same as a shift; in memory and in a single pass
+	void anchors(String contents) throws Exception {
+		Path anchors = Files.createTempFile(tempDirRoot, "shift", ".anchors");
+		Files.writeString(anchors, contents);
+		for (var mode : List.of("-L", "-m")) {
+			Path destination = Files.createTempFile(tempDirRoot, "dest", ".srt");
+			int exitCode = new CommandLine(new SrtFileProcessor())
+					.execute(mode, "--anchors", anchors.toString(), "-o", destination.toString(), srtFileSource.toString());
+			assertEquals(0, exitCode);
+			assertEquals(-1, Files.mismatch(Resources.srtFilePath("file-shifted"), destination));
+		}
+	}
+
+	@Test
+	void anchorsInvalid_fails() throws Exception {
+		Path anchors = Files.createTempFile(tempDirRoot, "invalid", ".anchors");
+		Files.writeString(anchors, "00:00:10,000\n");
+		CommandLine cmd = new CommandLine(new SrtFileProcessor());
+		cmd.setExecutionExceptionHandler(HANDLER_NO_OUTPUT);
+		assertEquals(1, cmd.execute("--anchors", anchors.toString(), srtFileSource.toString()));
+	}
+
+	@Test
+	// Server and client
+	void serverAndClient() throws Exception {
+		Path socket = tempDirRoot.resolve("server.sock");
+		var server = new Thread(() -> new CommandLine(new SrtFileProcessor()).execute("serve", "--socket", socket.toString()));
+		server.start();
+		while (!ServerCommand.isRunning(socket)) {
+			Thread.sleep(10);
+		}
+
+		// Same arguments as the main command
+		Path destination = Files.createTempFile(tempDirRoot, "dest", ".srt");
+		int exitCode = new CommandLine(new SrtFileProcessor())
+				.execute("client", "--socket", socket.toString(), "-s", "1001", "-o", destination.toString(), srtFileSource.toString());
+		assertEquals(0, exitCode);
+		var shifted = Resources.srtFilePath("file-shifted");
+		assertEquals(-1, Files.mismatch(shifted, destination));
+
+		// Errors are reported
+		exitCode = new CommandLine(new SrtFileProcessor())
+				.execute("client", "--socket", socket.toString(), "-e", "10001", "-o", destination.toString(), srtFileSource.toString());
+		assertEquals(1, exitCode);
+
+		exitCode = new CommandLine(new SrtFileProcessor()).execute("client", "--socket", socket.toString(), "--stop");
+		assertEquals(0, exitCode);
+		server.join();
+		assertFalse(Files.exists(socket));
+	}
+
+	private static void waitFor(Path file) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30_000;
+		while (!Files.exists(file) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertTrue(Files.exists(file), file + " not written");
+	}
+
+	@Test
+	// Subtitle file waiting for its segments file
+	void watch() throws Exception {
+		Path spool = Files.createTempDirectory(tempDirRoot, "spool");
+		Path outputDir = spool.resolve("out");
+		int[] exitCode = { -1 };
+		var watcher = new Thread(() -> exitCode[0] = new CommandLine(new SrtFileProcessor())
+				.execute("watch", "--debounce", "100", "-t", "2", "-d", outputDir.toString(), spool.toString()));
+		watcher.start();
+		try {
+			// Subtitle file written in two steps, before its segments file
+			var contents = Files.readAllBytes(srtFileSource);
+			Path dropped = spool.resolve("video.fr.srt");
+			Files.write(dropped, Arrays.copyOf(contents, contents.length / 2));
+			Thread.sleep(30);
+			Files.write(dropped, contents);
+			Thread.sleep(500);
+			assertFalse(Files.exists(outputDir.resolve("video.fr.srt")));
+
+			// Segments shared by the tracks
+			Files.copy(Resources.segmentsPath("segment2-text2"), spool.resolve("video.segments"));
+			waitFor(outputDir.resolve("video.fr.srt"));
+			assertEquals(-1, Files.mismatch(Resources.srtFilePath("file-segment2-text2"), outputDir.resolve("video.fr.srt")));
+			try (var files = Files.list(outputDir)) {
+				assertFalse(files.anyMatch(file -> file.getFileName().toString().contains(".tmp-")));
+			}
+		} finally {
+			watcher.interrupt();
+			watcher.join();
+		}
+		assertEquals(0, exitCode[0]);
+	}
+
+	@Test
+	// File already present, processed as a whole
+	void watchUnpaired() throws Exception {
+		Path spool = Files.createTempDirectory(tempDirRoot, "spool");
+		Files.copy(srtFileSource, spool.resolve("present.srt"));
+		int[] exitCode = { -1 };
+		var watcher = new Thread(() -> exitCode[0] = new CommandLine(new SrtFileProcessor())
+				.execute("watch", "--debounce", "100", "--process-unpaired", spool.toString()));
+		watcher.start();
+		try {
+			waitFor(spool.resolve("present.srt.new.srt"));
+			assertEquals(-1, Files.mismatch(srtFileSource, spool.resolve("present.srt.new.srt")));
+		} finally {
+			watcher.interrupt();
+			watcher.join();
+		}
+		assertEquals(0, exitCode[0]);
+	}
+
+	@Test
+	void watchOutputInDirectory_fails() throws Exception {
+		Path spool = Files.createTempDirectory(tempDirRoot, "spool");
+		int exitCode = new CommandLine(new SrtFileProcessor()).execute("watch", "-d", spool.resolve(".").toString(), spool.toString());
+		assertEquals(2, exitCode);
+	}
+
+	@Test
+	void watchMissingDirectory_fails() throws Exception {
+		int exitCode = new CommandLine(new SrtFileProcessor()).execute("watch", tempDirRoot.resolve("missing").toString());
+		assertEquals(2, exitCode);
+	}
 }
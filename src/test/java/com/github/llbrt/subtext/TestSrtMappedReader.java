@@ -0,0 +1,206 @@
+package com.github.llbrt.subtext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class TestSrtMappedReader {
+
+	@TempDir
+	Path tempDir;
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"empty",
+			"with-bom",
+			"file",
+			"file-extended",
+			"file-segment3-text3",
+	})
+	// Same texts as the streaming reader
+	void loadSuccess(String fileName) throws Exception {
+		var expected = Resources.createTestSrtFile(fileName);
+		expected.load(true);
+		var mapped = Resources.createTestSrtFile(fileName);
+		mapped.loadMapped(true);
+
+		assertEquals(expected.texts(), mapped.texts());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"err-end",
+			"err-count",
+			"err-text",
+			"err-time",
+			"err-time-overlap"
+	})
+	// Same errors as the streaming reader
+	void loadFailing(String fileName) throws Exception {
+		var expected = assertThrows(IllegalArgumentException.class, () -> Resources.createTestSrtFile(fileName).load(true));
+		var mapped = assertThrows(IllegalArgumentException.class, () -> Resources.createTestSrtFile(fileName).loadMapped(true));
+
+		assertEquals(expected.getMessage(), mapped.getMessage());
+	}
+
+	@Test
+	// Counters and blank lines checked as by the streaming reader
+	void loadEdgeCases() throws Exception {
+		var file = tempDir.resolve("edge.srt");
+		Files.writeString(file, """
+				1
+				00:00:01,000 --> 00:00:02,000
+				A
+				\u3000
+				+2
+				00:00:03,000 --> 00:00:04,000
+				B
+				 \u2003
+				0000000003
+				00:00:05,000 --> 00:00:06,000
+				C
+				\u00A0
+
+				\uFF14
+				00:00:07,000 --> 00:00:08,000
+				D
+
+				""");
+		var expected = new SrtFile(file);
+		expected.load(true);
+		var mapped = new SrtFile(file);
+		mapped.loadMapped(true);
+
+		assertEquals(4, expected.texts().size());
+		assertEquals(expected.texts(), mapped.texts());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "-1", "1 ", "2147483648", "1\u00A0" })
+	// Same invalid counters as the streaming reader
+	void loadInvalidCounter(String counter) throws Exception {
+		var file = tempDir.resolve("counter.srt");
+		Files.writeString(file, counter + "\n00:00:01,000 --> 00:00:02,000\nA\n\n");
+		var expected = assertThrows(IllegalArgumentException.class, () -> new SrtFile(file).load(true));
+		var mapped = assertThrows(IllegalArgumentException.class, () -> new SrtFile(file).loadMapped(true));
+
+		assertEquals(expected.getMessage(), mapped.getMessage());
+	}
+
+	@Test
+	void loadInvalidCountSuccess() throws Exception {
+		var srtFile = Resources.createTestSrtFile("err-count");
+		srtFile.loadMapped(false);
+		assertEquals(4, srtFile.texts().size());
+	}
+
+	@Test
+	void loadCrLf() throws Exception {
+		var contents = Files.readString(Resources.srtFilePath("file")).replace("\n", "\r\n");
+		var file = tempDir.resolve("crlf.srt");
+		Files.writeString(file, contents, StandardCharsets.UTF_8);
+
+		var expected = Resources.createTestSrtFile("file");
+		expected.load(true);
+		var mapped = new SrtFile(file);
+		mapped.loadMapped(true);
+
+		assertEquals(expected.texts(), mapped.texts());
+	}
+
+	private static CueTable readAll(Path file, boolean verifyCount, int chunkSize) throws Exception {
+		var cues = new CueTable();
+		try (var reader = (SrtMappedReader) SrtMappedReader.open(file)) {
+			reader.readAll(cues, verifyCount, chunkSize);
+			assertFalse(reader.nextText(cues, verifyCount));
+		}
+		return cues;
+	}
+
+	private Path generate(int texts, int missing, String lineSeparator) throws Exception {
+		var contents = new StringBuilder();
+		for (int i = 1; i <= texts; i++) {
+			if (i == missing) {
+				continue;
+			}
+			var time = new SrtTime.Value(1000L * i, 1000L * i + 500);
+			contents.append(i).append(lineSeparator).append(time).append(lineSeparator)
+					.append(i % 3 == 0 ? "♪" : "Text " + i).append(lineSeparator)
+					.append("Line 2").append(lineSeparator).append(lineSeparator);
+		}
+		var file = tempDir.resolve("generated-" + texts + "-" + missing + ".srt");
+		Files.writeString(file, contents, StandardCharsets.UTF_8);
+		return file;
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"empty, 16",
+			"with-bom, 16",
+			"file, 1",
+			"file, 16",
+			"file-unsorted, 32",
+			"err-count, 16",
+	})
+	// Same texts read in parallel as in a single chunk
+	void readAllSuccess(String fileName, int chunkSize) throws Exception {
+		var file = Resources.srtFilePath(fileName);
+		assertEquals(readAll(file, false, Integer.MAX_VALUE).texts(), readAll(file, false, chunkSize).texts());
+		if (!fileName.equals("err-count")) {
+			assertEquals(readAll(file, true, Integer.MAX_VALUE).texts(), readAll(file, true, chunkSize).texts());
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"err-end",
+			"err-count",
+			"err-text",
+			"err-time",
+	})
+	// Same errors as the sequential reading
+	void readAllFailing(String fileName) throws Exception {
+		var expected = assertThrows(IllegalArgumentException.class, () -> Resources.createTestSrtFile(fileName).load(true));
+		var parallel = assertThrows(IllegalArgumentException.class, () -> readAll(Resources.srtFilePath(fileName), true, 16));
+		assertEquals(expected.getMessage(), parallel.getMessage());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "\n", "\r\n" })
+	void readAllLarge(String lineSeparator) throws Exception {
+		var file = generate(5000, 0, lineSeparator);
+		var expected = new SrtFile(file);
+		expected.load(true);
+
+		var cues = readAll(file, true, 4096);
+		assertEquals(expected.texts(), cues.texts());
+		assertEquals(5000, cues.count(4999));
+		assertTrue(cues.lines().distinctSize() < 5000);
+	}
+
+	@Test
+	// Counter missing at a chunk boundary
+	void readAllMissingCount() throws Exception {
+		var file = generate(2000, 1500, "\n");
+		var expected = assertThrows(IllegalArgumentException.class, () -> new SrtFile(file).load(true));
+		for (int chunkSize : new int[] { 64, 4096, 10_000 }) {
+			var parallel = assertThrows(IllegalArgumentException.class, () -> readAll(file, true, chunkSize));
+			assertEquals(expected.getMessage(), parallel.getMessage());
+		}
+
+		var unverified = new SrtFile(file);
+		unverified.load(false);
+		assertEquals(unverified.texts(), readAll(file, false, 4096).texts());
+	}
+}
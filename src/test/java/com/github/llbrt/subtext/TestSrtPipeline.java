@@ -0,0 +1,156 @@
+package com.github.llbrt.subtext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import picocli.CommandLine;
+
+class TestSrtPipeline {
+
+	@TempDir
+	Path tempDir;
+
+	private static ProcessingOptions options(String... args) {
+		var options = new ProcessingOptions();
+		new CommandLine(options).parseArgs(args);
+		return options;
+	}
+
+	private static TimeSegments segments(String keyword) throws Exception {
+		if (keyword.isEmpty()) {
+			return new TimeSegments(null);
+		}
+		var timeSegments = Resources.createTestTimeSegments(keyword);
+		timeSegments.load();
+		return timeSegments;
+	}
+
+	private Path run(ProcessingOptions options, TimeSegments timeSegments, String fileName) throws Exception {
+		return run(options, timeSegments, Resources.srtFilePath(fileName));
+	}
+
+	private Path run(ProcessingOptions options, TimeSegments timeSegments, Path source) throws Exception {
+		var destination = tempDir.resolve(source.getFileName() + ".new.srt");
+		try (var reader = SrtReader.open(source); var writer = SrtWriter.create(destination)) {
+			new SrtPipeline(options, timeSegments).run(reader, source, writer, destination);
+		}
+		return destination;
+	}
+
+	/**
+	 * Same as {@link #run(ProcessingOptions, TimeSegments, Path)}, texts being
+	 * copied from the mapped file.
+	 */
+	private Path runPassthrough(ProcessingOptions options, TimeSegments timeSegments, Path source) throws Exception {
+		var destination = tempDir.resolve(source.getFileName() + ".passthrough.srt");
+		try (var reader = (SrtMappedReader) SrtMappedReader.open(source); var writer = SrtWriter.create(destination)) {
+			reader.setPassthrough(SrtWriter.LINE_SEPARATOR);
+			new SrtPipeline(options, timeSegments).run(reader, source, writer, destination);
+		}
+		return destination;
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"file, '', ''",
+			"file-extended, -e 1001, ''",
+			"file-shifted, -s 1001, ''",
+			"file-segment-text2, '', segment-text2",
+			"file-segment2-text2, '', segment2-text2",
+			"file-segment3-text3, '', segment3-text3",
+			"file-segment2-text2-trunc-start, '', segment2-text2-trunc-start",
+			"file-segment2-text2-trunc-end, '', segment2-text2-trunc-end",
+	})
+	// Same output as the processing in memory
+	void runSuccess(String expected, String args, String keyword) throws Exception {
+		var options = options(args.isEmpty() ? new String[0] : args.split(" "));
+		var destination = run(options, segments(keyword), "file");
+		assertEquals(-1, Files.mismatch(Resources.srtFilePath(expected), destination));
+
+		var passthrough = runPassthrough(options, segments(keyword), Resources.srtFilePath("file"));
+		assertEquals(-1, Files.mismatch(Resources.srtFilePath(expected), passthrough));
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"--scale 25/23.976, ''",
+			"--scale 0.5 -e 200 -s -1000, ''",
+			"--scale 2 -s 1001, segment2-text2",
+	})
+	// Same output as the texts retimed in memory in a single sweep
+	void runScale(String args, String keyword) throws Exception {
+		var options = options(args.split(" "));
+		var destination = run(options, segments(keyword), "file");
+
+		var srtFile = Resources.createTestSrtFile("file");
+		srtFile.load(true);
+		srtFile.retimeTexts(TimeTransform.of(options));
+		var expected = tempDir.resolve("expected.srt");
+		new SrtFile(expected, srtFile.extractTimeSegments(segments(keyword))).save();
+		assertEquals(-1, Files.mismatch(expected, destination));
+	}
+
+	@Test
+	void runScaleOverlap_fails() throws Exception {
+		var e = assertThrows(ProcessingException.class, () -> run(options("--scale", "0.0001"), segments(""), "file"));
+		assertEquals("Remapping subtitles failed", e.getMessage());
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"'\n', 10",
+			"'\r\n', 10",
+			"'\n', 10000",
+			"'\r\n', 10000",
+	})
+	// Same output with other line terminators and texts larger than the buffer
+	void runPassthrough(String lineSeparator, int lineLength) throws Exception {
+		var contents = new StringBuilder();
+		for (int i = 1; i <= 50; i++) {
+			contents.append(i).append(lineSeparator)
+					.append(new SrtTime.Value(1000L * i, 1000L * i + 500)).append(lineSeparator)
+					.append("é".repeat(1 + i * lineLength / 50)).append(lineSeparator)
+					.append("Line 2").append(lineSeparator).append(lineSeparator);
+		}
+		var source = tempDir.resolve("large.srt");
+		Files.writeString(source, contents);
+
+		var options = options("-s", "1001");
+		assertEquals(-1, Files.mismatch(run(options, segments(""), source), runPassthrough(options, segments(""), source)));
+	}
+
+	@Test
+	void runEmpty() throws Exception {
+		var destination = run(options(), segments(""), "empty");
+		assertEquals(0, Files.size(destination));
+	}
+
+	@Test
+	void runUnsorted() throws Exception {
+		assertThrows(SrtPipeline.UnsortedException.class, () -> run(options(), segments(""), "file-unsorted"));
+	}
+
+	@Test
+	void runOverlap_fails() throws Exception {
+		var contents = Files.readString(Resources.srtFilePath("file")).replace("00:11:17,935", "00:11:22,720");
+		var file = tempDir.resolve("overlap.srt");
+		Files.writeString(file, contents);
+
+		var e = assertThrows(ProcessingException.class, () -> run(options(), segments(""), file));
+		assertEquals("Invalid input file", e.getMessage());
+	}
+
+	@Test
+	void runExtendOverlap_fails() throws Exception {
+		var e = assertThrows(ProcessingException.class, () -> run(options("-e", "10001"), segments(""), "file"));
+		assertEquals("Duration increment too large", e.getMessage());
+	}
+}
@@ -0,0 +1,57 @@
+package com.github.llbrt.subtext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TestSrtReader {
+
+	@Test
+	void readTexts() throws Exception {
+		try (var reader = SrtReader.open(Resources.srtFilePath("file"))) {
+			var first = reader.nextText(true);
+			assertEquals(1, first.count());
+			assertEquals("00:06:10,360 --> 00:06:11,735", first.time().toString());
+			assertEquals(List.of("Les mains en l'air !"), first.texts());
+
+			reader.nextText(true);
+			var third = reader.nextText(true);
+			assertEquals(3, third.count());
+			assertEquals(List.of("Quatre cafés, moyens.", "5 €"), third.texts());
+			assertEquals(12, reader.line());
+
+			reader.nextText(true);
+			assertNull(reader.nextText(true));
+		}
+	}
+
+	@Test
+	void readWithBom() throws Exception {
+		try (var reader = SrtReader.open(Resources.srtFilePath("with-bom"))) {
+			assertEquals("1", reader.nextLine());
+			assertEquals(0, reader.line());
+		}
+	}
+
+	@Test
+	void readEmpty() throws Exception {
+		try (var reader = SrtReader.open(Resources.srtFilePath("empty"))) {
+			assertNull(reader.nextText(true));
+		}
+	}
+
+	@Test
+	void readUnexpectedEnd() throws Exception {
+		try (var reader = SrtReader.open(Resources.srtFilePath("err-end"))) {
+			for (int i = 0; i < 3; i++) {
+				reader.nextText(true);
+			}
+			var e = assertThrows(IllegalArgumentException.class, () -> reader.nextText(true));
+			assertEquals("Line #15: unexpected end of file", e.getMessage());
+		}
+	}
+}
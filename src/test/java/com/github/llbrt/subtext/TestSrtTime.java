@@ -5,8 +5,14 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
 import java.util.ArrayList;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -143,4 +149,64 @@ class TestSrtTime {
 		var extended = time.shift(-123_456);
 		assertEquals("00:02:00,318 --> 00:02:02,634", extended.toString());
 	}
+
+	@Test
+	void shiftBeforeZero_fails() {
+		var time = SrtTime.readSrtTimeValue(1, "00:00:03,774 --> 00:00:06,090");
+		assertThrows(IllegalArgumentException.class, () -> time.shift(-4_000));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"23:59:59,999 --> 24:00:00,001",
+			"99:00:00,000 --> 100:00:00,000",
+	})
+	void moreThanOneDay(String srtTime) {
+		var value = SrtTime.readSrtTimeValue(1, srtTime);
+		assertTrue(value.end() > value.start());
+		assertEquals(srtTime, value.toString());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"00:60:03,775",
+			"00:04:60,775",
+			"00:04:03.775",
+			"00:04:03,77a",
+			"0a:04:03,775",
+			"",
+	})
+	void invalidMillis(String time) {
+		assertThrows(DateTimeParseException.class, () -> SrtTime.parseMillis(time, 0, time.length()));
+		var buffer = ByteBuffer.wrap(time.getBytes(StandardCharsets.US_ASCII));
+		assertThrows(DateTimeParseException.class, () -> SrtTime.parseMillis(buffer, 0, time.length()));
+	}
+
+	@Test
+	// Compare with the java.time formatter
+	void parityWithFormatter() {
+		var formatter = DateTimeFormatter.ofPattern("HH:mm:ss,SSS");
+		var random = new Random(17);
+		var buffer = ByteBuffer.allocate(32);
+		for (int i = 0; i < 100_000; i++) {
+			var time = LocalTime.ofNanoOfDay(random.nextInt(24 * 3600 * 1000) * 1_000_000L);
+			var text = formatter.format(time);
+			long millis = time.getLong(ChronoField.MILLI_OF_DAY);
+
+			// Parse
+			assertEquals(millis, LocalTime.parse(text, formatter).getLong(ChronoField.MILLI_OF_DAY));
+			assertEquals(millis, SrtTime.parseMillis(text, 0, text.length()));
+			var padded = "x" + text + "x";
+			assertEquals(millis, SrtTime.parseMillis(padded, 1, padded.length() - 1));
+			assertEquals(millis, SrtTime.parseMillis(ByteBuffer.wrap(padded.getBytes(StandardCharsets.US_ASCII)), 1, padded.length() - 1));
+
+			// Format
+			var builder = new StringBuilder();
+			SrtTime.formatMillis(millis, builder);
+			assertEquals(text, builder.toString());
+			buffer.clear();
+			SrtTime.formatMillis(millis, buffer);
+			assertEquals(text, new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII));
+		}
+	}
 }
@@ -0,0 +1,53 @@
+package com.github.llbrt.subtext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestSrtWriter {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void writeSameAsSource() throws Exception {
+		var source = Resources.createTestSrtFile("file");
+		source.load(true);
+
+		var destination = tempDir.resolve("file.srt");
+		try (var writer = SrtWriter.create(destination)) {
+			for (int i = 0; i < source.cues().size(); i++) {
+				writer.write(source.cues(), i);
+			}
+			assertEquals(4, writer.count());
+		}
+		assertEquals(-1, Files.mismatch(Resources.srtFilePath("file"), destination));
+	}
+
+	@Test
+	void writeLargeTexts() throws Exception {
+		var cues = new CueTable();
+		var longLine = "é".repeat(100_000);
+		for (int i = 0; i < 10; i++) {
+			cues.add(i + 1, new SrtTime.Value(1000 * i, 1000 * i + 500), List.of(longLine, "line " + i));
+		}
+
+		var destination = tempDir.resolve("large.srt");
+		try (var writer = SrtWriter.create(destination)) {
+			for (int i = 0; i < cues.size(); i++) {
+				writer.write(cues, i);
+			}
+		}
+
+		var copy = new SrtFile(destination);
+		copy.load(true);
+		assertEquals(10, copy.cues().size());
+		assertEquals(List.of(longLine, "line 9"), copy.texts().get(9).texts());
+		assertEquals("00:00:09,000 --> 00:00:09,500", copy.texts().get(9).time().toString());
+	}
+}
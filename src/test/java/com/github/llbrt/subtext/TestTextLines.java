@@ -0,0 +1,63 @@
+package com.github.llbrt.subtext;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+class TestTextLines {
+
+	@Test
+	// Repeated lines stored once
+	void deduplicate() {
+		var lines = new TextLines();
+		for (int i = 0; i < 1000; i++) {
+			lines.add("♪");
+			lines.add("line " + (i % 10));
+		}
+		assertEquals(2000, lines.size());
+		assertEquals(11, lines.distinctSize());
+		assertEquals(lines.handle(0), lines.handle(1998));
+		assertNotEquals(lines.handle(1), lines.handle(3));
+		assertEquals("♪", lines.line(1998));
+		assertEquals("line 9", lines.line(1999));
+		assertEquals("line 3", new String(lines.data(), lines.start(7), lines.end(7) - lines.start(7), UTF_8));
+	}
+
+	@Test
+	// Distinct lines kept through rehashes
+	void distinctLines() {
+		var lines = new TextLines();
+		var buffer = ByteBuffer.wrap("[laughs]".getBytes(UTF_8));
+		for (int i = 0; i < 10_000; i++) {
+			lines.add("text " + i);
+			lines.add(buffer, 0, buffer.limit());
+		}
+		lines.add("");
+		lines.add("");
+		assertEquals(20_002, lines.size());
+		assertEquals(10_002, lines.distinctSize());
+		for (int i = 0; i < 10_000; i++) {
+			assertEquals("text " + i, lines.line(2 * i));
+			assertEquals("[laughs]", lines.line(2 * i + 1));
+		}
+		assertEquals("", lines.line(20_001));
+	}
+
+	@Test
+	void clear() {
+		var lines = new TextLines();
+		lines.add("a");
+		lines.add("b");
+		lines.clear();
+		assertEquals(0, lines.size());
+
+		lines.add("b");
+		lines.add("b");
+		assertEquals(1, lines.distinctSize());
+		assertEquals("b", lines.line(1));
+	}
+}
@@ -0,0 +1,107 @@
+package com.github.llbrt.subtext;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class TestTimeAnchors {
+
+	@TempDir
+	Path tempDir;
+
+	// 10s late from 00:10:00, then drifting back to 5s late at 00:20:00
+	private static final TimeAnchors ANCHORS = new TimeAnchors(
+			new long[] { 600_000, 1_200_000 },
+			new long[] { 610_000, 1_205_000 });
+
+	@ParameterizedTest
+	@CsvSource({
+			// Offset of the first anchor before it
+			"0, 10000",
+			"599999, 609999",
+			"600000, 610000",
+			// Interpolated
+			"900000, 907500",
+			"900001, 907501",
+			"1200000, 1205000",
+			// Offset of the last anchor after it
+			"3600000, 3605000",
+	})
+	void map(long source, long target) throws Exception {
+		assertEquals(target, ANCHORS.map(source));
+	}
+
+	@Test
+	// Same intervals found by binary search and by a merged sweep
+	void interval() throws Exception {
+		var random = new Random(42);
+		int size = 5000;
+		var sources = new long[size];
+		var targets = new long[size];
+		for (int i = 0; i < size; i++) {
+			sources[i] = (i == 0 ? 0 : sources[i - 1]) + 1 + random.nextInt(2000);
+			targets[i] = (i == 0 ? 0 : targets[i - 1]) + 1 + random.nextInt(2000);
+		}
+		var anchors = new TimeAnchors(sources, targets);
+		int interval = -1;
+		for (long time = 0; time < sources[size - 1] + 1000; time += 1 + random.nextInt(700)) {
+			interval = anchors.interval(time, interval);
+			assertEquals(anchors.interval(time), interval);
+		}
+		// Back in time
+		assertEquals(anchors.interval(10), anchors.interval(10, size - 1));
+	}
+
+	@Test
+	// Same times as the anchors applied one text at a time
+	void transform() throws Exception {
+		var transform = new TimeTransform(20, 2, -500, ANCHORS);
+		var starts = new long[] { 1000, 600_000, 900_000, 2_000_000 };
+		var ends = new long[] { 2000, 700_000, 1_300_000, 2_000_100 };
+		var expectedStarts = new long[] { 21_500, 1_219_500, 1_814_500, 4_009_500 };
+		var expectedEnds = new long[] { 23_540, 1_417_874, 2_609_540, 4_009_740 };
+		for (int i = 0; i < starts.length; i++) {
+			assertEquals(expectedStarts[i], transform.start(starts[i]));
+			assertEquals(expectedEnds[i], transform.end(ends[i]));
+		}
+		assertEquals(-1, transform.apply(starts, ends, starts.length));
+		assertArrayEquals(expectedStarts, starts);
+		assertArrayEquals(expectedEnds, ends);
+	}
+
+	@Test
+	// Anchors in any order, blank lines ignored
+	void load() throws Exception {
+		var file = tempDir.resolve("drift.anchors");
+		Files.writeString(file, "00:20:00,000 --> 00:20:05,000\n\n00:10:00,000 --> 00:10:10,000\n");
+		var anchors = TimeAnchors.load(file);
+		assertEquals(2, anchors.size());
+		assertEquals(907_500, anchors.map(900_000));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"",
+			"00:10:00,000\n",
+			"00:10:00,000 --> 10:00\n",
+			// Same source twice
+			"00:10:00,000 --> 00:10:10,000\n00:10:00,000 --> 00:10:20,000\n",
+			// Targets not increasing
+			"00:10:00,000 --> 00:10:10,000\n00:20:00,000 --> 00:10:00,000\n",
+	})
+	void load_fails(String contents) throws Exception {
+		var file = tempDir.resolve("invalid.anchors");
+		Files.writeString(file, contents);
+		assertThrows(IllegalArgumentException.class, () -> TimeAnchors.load(file));
+	}
+}
@@ -0,0 +1,90 @@
+package com.github.llbrt.subtext;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import picocli.CommandLine.TypeConversionException;
+
+class TestTimeTransform {
+
+	@Test
+	// Same times as the transform applied one text at a time
+	void apply() throws Exception {
+		var transform = new TimeTransform(20, 25 / 23.976, -500);
+		int size = 100_000;
+		var starts = new long[size];
+		var ends = new long[size];
+		for (int i = 0; i < size; i++) {
+			starts[i] = 1000L + 3000L * i;
+			ends[i] = starts[i] + 1500 + i % 1000;
+		}
+		var expectedStarts = new long[size];
+		var expectedEnds = new long[size];
+		for (int i = 0; i < size; i++) {
+			expectedStarts[i] = transform.start(starts[i]);
+			expectedEnds[i] = transform.end(ends[i]);
+		}
+
+		assertEquals(-1, transform.apply(starts, ends, size));
+		assertArrayEquals(expectedStarts, starts);
+		assertArrayEquals(expectedEnds, ends);
+		assertEquals(1043 - 500, starts[0]);
+	}
+
+	@Test
+	void applyWithoutScale() throws Exception {
+		var starts = new long[] { 1000, 3000 };
+		var ends = new long[] { 2000, 4000 };
+		assertEquals(-1, new TimeTransform(999, 1, 100).apply(starts, ends, 2));
+		assertArrayEquals(new long[] { 1100, 3100 }, starts);
+		assertArrayEquals(new long[] { 3099, 5099 }, ends);
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			// Starts before 00:00:00,000
+			"0, 1, -1001, 0",
+			"0, 1, -3001, 0",
+			// Extension overlapping the next text
+			"1000, 1, 0, 1",
+			// Both times rounded to the same millisecond
+			"0, 0.001, 0, 1",
+	})
+	// Texts from the invalid one are unchanged
+	void applyInvalid(int extend, double scale, long shift, int invalid) throws Exception {
+		var starts = new long[] { 1000, 3000, 5000 };
+		var ends = new long[] { 2500, 4000, 6000 };
+		assertEquals(invalid, new TimeTransform(extend, scale, shift).apply(starts, ends, 3));
+		assertEquals(3000, starts[1]);
+		assertEquals(6000, ends[2]);
+	}
+
+	@ParameterizedTest
+	@ValueSource(doubles = { 0, -1, Double.NaN, Double.POSITIVE_INFINITY })
+	void invalidScale_fails(double scale) throws Exception {
+		assertThrows(IllegalArgumentException.class, () -> new TimeTransform(0, scale, 0));
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"2, 2",
+			"0.5, 0.5",
+			"25/23.976, 1.04271",
+			"23.976/25, 0.95904",
+	})
+	void convertScale(String value, double expected) throws Exception {
+		assertEquals(expected, new ProcessingOptions.ScaleConverter().convert(value), 1e-5);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "", "a", "25/", "0", "-1", "25/0", "1/-2" })
+	void convertScale_fails(String value) throws Exception {
+		assertThrows(TypeConversionException.class, () -> new ProcessingOptions.ScaleConverter().convert(value));
+	}
+}